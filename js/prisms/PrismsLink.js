@@ -15,6 +15,9 @@ __dojo.declare("prisms.PrismsLink", null, {
 
 	connectImmediately: false,
 
+	/** Whether this link holds a waitEvents request open so the server can push events immediately */
+	pushEnabled: false,
+
 	cipher: null,
 
 	constructor: function(args){
@@ -28,6 +31,8 @@ __dojo.declare("prisms.PrismsLink", null, {
 			this.imageURL=args.imageURL;
 		if(args.connectImmediately)
 			this.connectImmediately=args.connectImmediately;
+		if(args.pushEnabled)
+			this.pushEnabled=args.pushEnabled;
 
 		this.theMaxKeyLength = 448 / 8;
 
@@ -130,6 +135,8 @@ __dojo.declare("prisms.PrismsLink", null, {
 		}
 		if(event.method=="getEvents")
 		{
+			if(this._pushing)
+				return; // The results will be pushed when the task finishes
 			window.setTimeout(function(){
 				self.callApp(null, "getEvents", {"taskID": event.taskID});
 			}, 500);
@@ -187,6 +194,8 @@ __dojo.declare("prisms.PrismsLink", null, {
 					self.callApp(null, "getEvents");
 				}, 10000);
 			}
+			if(this.pushEnabled)
+				this._startPush();
 			for(var p in this.plugins)
 			{
 				if(typeof this.plugins[p]=="function")
@@ -261,6 +270,21 @@ __dojo.declare("prisms.PrismsLink", null, {
 			throw new Error("Unrecognized PRISMS event: "+this.toJson(event));
 	},
 
+	_startPush: function(){
+		if(this._pushing)
+			return;
+		this._pushing=true;
+		var self=this;
+		this.callServer("waitEvents", null, {
+			timeout: 90000,
+			finished: function(success){
+				self._pushing=false;
+				if(success && self.isActive())
+					self._startPush();
+			}
+		});
+	},
+
 	shutdown: function(){
 		if(this.pingID)
 		{
@@ -534,6 +558,11 @@ __dojo.declare("prisms.PrismsLink", null, {
 		this._xhrCall({method: "processEvent", data: params}, xhrArgs);
 	},
 
+	//Sends several events (each with plugin and method set) to be processed in order in one request
+	callAppBatch: function(events, xhrArgs){
+		this._xhrCall({method: "processEvents", data: {events: events}}, xhrArgs);
+	},
+
 	getWmsSource: function(plugin, method, params){
 		if(!params)
 			params={sessionWMS: true};
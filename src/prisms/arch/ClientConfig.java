@@ -77,6 +77,8 @@ public class ClientConfig
 
 	private RemoteEventSerializer theSerializer;
 
+	private CoalescingPolicy theCoalescingPolicy;
+
 	private ArrayList<EventListenerType> theEventTypes;
 
 	private ArrayList<MonitorType> theMonitorTypes;
@@ -210,6 +212,24 @@ public class ClientConfig
 		theSerializer = serializer;
 	}
 
+	/**
+	 * @return The policy that determines which outgoing events supersede one another in sessions
+	 *         of this client config, or null if events are never coalesced
+	 */
+	public CoalescingPolicy getCoalescingPolicy()
+	{
+		return theCoalescingPolicy;
+	}
+
+	/** @param policy The policy to coalesce outgoing events in sessions of this client config */
+	public void setCoalescingPolicy(CoalescingPolicy policy)
+	{
+		if(isConfigured)
+			throw new IllegalStateException("Coalescing policy cannot be set after the client"
+				+ " has been completely configured");
+		theCoalescingPolicy = policy;
+	}
+
 	/**
 	 * Adds an event listener type to add to sessions created (in the future) with this client
 	 * config
@@ -295,6 +315,8 @@ public class ClientConfig
 					}
 				}
 				session.addEventListener(elt.theEventName, pel);
+				if(elt.theConfig != null && elt.theConfig.is("async", false))
+					session.setAsyncEventListener(pel, true);
 			}
 		} finally
 		{
@@ -0,0 +1,62 @@
+/*
+ * CoalescingPolicy.java Created Oct 17, 2026
+ */
+package prisms.arch;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Determines which outgoing events in a session supersede one another. When an event is posted to a
+ * session while an event with the same coalescing key is still waiting to be sent to the client,
+ * the earlier event is dropped. The later event is sent in its own place in the queue.
+ */
+public interface CoalescingPolicy
+{
+	/**
+	 * @param evt The outgoing event to get the coalescing key for
+	 * @return The key identifying the events that the given event supersedes, or null if the event
+	 *         should never be coalesced
+	 */
+	String getCoalesceKey(JSONObject evt);
+
+	/**
+	 * Coalesces events for a set of methods. Events are keyed by their plugin and method, and by
+	 * the ID of the item in the event (the "id" of the "item" property) if there is one.
+	 */
+	public static class ByMethod implements CoalescingPolicy
+	{
+		private final java.util.Set<String> theMethods;
+
+		/** @param methods The names of the methods whose events may be coalesced */
+		public ByMethod(String... methods)
+		{
+			theMethods = new java.util.HashSet<String>();
+			for(String method : methods)
+				theMethods.add(method);
+		}
+
+		/** @return The names of the methods whose events may be coalesced by this policy */
+		public String [] getMethods()
+		{
+			return theMethods.toArray(new String [theMethods.size()]);
+		}
+
+		public String getCoalesceKey(JSONObject evt)
+		{
+			Object plugin = evt.get("plugin");
+			Object method = evt.get("method");
+			if(plugin == null || method == null || !theMethods.contains(method))
+				return null;
+			StringBuilder ret = new StringBuilder();
+			ret.append(plugin).append('/').append(method);
+			Object item = evt.get("item");
+			if(item instanceof JSONObject)
+			{
+				Object id = ((JSONObject) item).get("id");
+				if(id != null)
+					ret.append('/').append(id);
+			}
+			return ret.toString();
+		}
+	}
+}
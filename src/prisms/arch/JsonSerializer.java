@@ -15,10 +15,148 @@ import org.json.simple.JSONObject;
  * {@link org.qommons.QommonsUtils#decodeUnicode(String)}) and safely-encoded characters (same as
  * unicode-encoded, but using "__XENC" as a prefix instead of "\\u".
  */
-public class JsonSerializer implements RemoteEventSerializer
+public class JsonSerializer implements RemoteEventSerializer.Streaming
 {
 	private static final Logger log = Logger.getLogger(JsonSerializer.class);
 
+	private static final char [] HEX = "0123456789ABCDEF".toCharArray();
+
+	/** Buffers are reused by each request thread so that streaming does not allocate per response */
+	private static final ThreadLocal<char []> theBuffers = new ThreadLocal<char []>()
+	{
+		@Override
+		protected char [] initialValue()
+		{
+			return new char [8192];
+		}
+	};
+
+	/** Writes JSON content through a reusable buffer */
+	private static class JsonWriter
+	{
+		private final java.io.Writer theOut;
+
+		private final char [] theBuffer;
+
+		private final boolean isEncodingUnicode;
+
+		private int theLength;
+
+		JsonWriter(java.io.Writer out, boolean encodeUnicode)
+		{
+			theOut = out;
+			theBuffer = theBuffers.get();
+			isEncodingUnicode = encodeUnicode;
+		}
+
+		void write(char c) throws java.io.IOException
+		{
+			if(theLength == theBuffer.length)
+				flush();
+			theBuffer[theLength++] = c;
+		}
+
+		void write(String str) throws java.io.IOException
+		{
+			for(int i = 0; i < str.length(); i++)
+				write(str.charAt(i));
+		}
+
+		void writeValue(Object value) throws java.io.IOException
+		{
+			if(value == null)
+				write("null");
+			else if(value instanceof String)
+				writeString((String) value);
+			else if(value instanceof JSONObject)
+			{
+				write('{');
+				boolean first = true;
+				for(java.util.Map.Entry<Object, Object> entry : ((java.util.Map<Object, Object>) value)
+					.entrySet())
+				{
+					if(!first)
+						write(',');
+					first = false;
+					writeString((String) entry.getKey());
+					write(':');
+					writeValue(entry.getValue());
+				}
+				write('}');
+			}
+			else if(value instanceof JSONArray)
+			{
+				write('[');
+				JSONArray arr = (JSONArray) value;
+				for(int i = 0; i < arr.size(); i++)
+				{
+					if(i > 0)
+						write(',');
+					writeValue(arr.get(i));
+				}
+				write(']');
+			}
+			else
+				write(value.toString());
+		}
+
+		/** Escapes strings the same way as {@link JSONObject#toString()} */
+		void writeString(String str) throws java.io.IOException
+		{
+			write('"');
+			for(int i = 0; i < str.length(); i++)
+			{
+				char c = str.charAt(i);
+				switch(c)
+				{
+				case '"':
+					write("\\\"");
+					break;
+				case '\\':
+					write("\\\\");
+					break;
+				case '/':
+					write("\\/");
+					break;
+				case '\b':
+					write("\\b");
+					break;
+				case '\f':
+					write("\\f");
+					break;
+				case '\n':
+					write("\\n");
+					break;
+				case '\r':
+					write("\\r");
+					break;
+				case '\t':
+					write("\\t");
+					break;
+				default:
+					if(c < ' ' || (isEncodingUnicode && c > '\u007f'))
+					{
+						write('\\');
+						write('u');
+						write(HEX[(c >> 12) & 0xf]);
+						write(HEX[(c >> 8) & 0xf]);
+						write(HEX[(c >> 4) & 0xf]);
+						write(HEX[c & 0xf]);
+					}
+					else
+						write(c);
+				}
+			}
+			write('"');
+		}
+
+		void flush() throws java.io.IOException
+		{
+			theOut.write(theBuffer, 0, theLength);
+			theLength = 0;
+		}
+	}
+
 	public String getContentType(JSONArray events)
 	{
 		return "text/prisms-json";
@@ -56,6 +194,15 @@ public class JsonSerializer implements RemoteEventSerializer
 		return ret;
 	}
 
+	public void serialize(JSONArray events, java.io.Writer out, boolean encodeUnicode)
+		throws NotSerializableException, java.io.IOException
+	{
+		validate(events);
+		JsonWriter writer = new JsonWriter(out, encodeUnicode);
+		writer.writeValue(events);
+		writer.flush();
+	}
+
 	/**
 	 * Validates a JSON-serializable object to ensure that it can be serialized and deserialized by
 	 * either the server or the client correctly.
@@ -23,6 +23,9 @@ public class PrismsApplication
 	/** A property in a PRISMS event that marks the event as having been fired globally */
 	public static final String GLOBALIZED_EVENT_PROPERTY = "globalEvent";
 
+	/** The minimum number of threads that run an application's scheduled tasks */
+	private static final int SCHEDULER_THREADS = 4;
+
 	/** A task to be run on a session */
 	public static interface SessionTask
 	{
@@ -174,6 +177,15 @@ public class PrismsApplication
 
 	private final ArrayList<PropertyManager<?>> theManagers;
 
+	/** An immutable index of managers by property, replaced whenever a manager is added */
+	private volatile java.util.Map<PrismsProperty<?>, PropertyManager<?> []> theManagerIndex;
+
+	/** Sessions whose values of globally-changed properties have yet to be checked */
+	private final ConcurrentHashMap<PrismsProperty<?>, StaleSessions<?>> theStaleSessions;
+
+	/** The slots in the stale session bitmaps that are taken by sessions */
+	private final java.util.BitSet theSessionSlots;
+
 	private final ArrayList<EventListenerType> theELTypes;
 
 	private final ArrayList<MonitorType> theMonitorTypes;
@@ -184,6 +196,10 @@ public class PrismsApplication
 
 	private final ArrayList<ScheduledTask> theRecurringTasks;
 
+	private java.util.concurrent.ScheduledThreadPoolExecutor theScheduler;
+
+	private boolean isDestroyed;
+
 	private final ArrayList<Runnable> theDestroyTasks;
 
 	private final ConcurrentHashMap<PrismsProperty<?>, PrismsPropertyLock> thePropertyLocks;
@@ -232,6 +248,9 @@ public class PrismsApplication
 		thePermissions = new java.util.LinkedHashMap<String, Permission>();
 		theSessions = new java.util.concurrent.ConcurrentLinkedQueue<PrismsSession>();
 		theManagers = new ArrayList<PropertyManager<?>>();
+		theManagerIndex = java.util.Collections.emptyMap();
+		theStaleSessions = new ConcurrentHashMap<PrismsProperty<?>, StaleSessions<?>>();
+		theSessionSlots = new java.util.BitSet();
 		theELTypes = new java.util.ArrayList<EventListenerType>();
 		theMonitorTypes = new java.util.ArrayList<MonitorType>();
 		theGlobalListeners = new ConcurrentHashMap<String, PrismsEventListener []>();
@@ -431,6 +450,21 @@ public class PrismsApplication
 		synchronized(theManagers)
 		{
 			theManagers.add(manager);
+			java.util.HashMap<PrismsProperty<?>, PropertyManager<?> []> index;
+			index = new java.util.HashMap<PrismsProperty<?>, PropertyManager<?> []>(
+				theManagerIndex);
+			PropertyManager<?> [] mgrs = index.get(manager.getProperty());
+			if(mgrs == null)
+				mgrs = new PropertyManager<?> [] {manager};
+			else
+			{
+				PropertyManager<?> [] newMgrs = new PropertyManager<?> [mgrs.length + 1];
+				System.arraycopy(mgrs, 0, newMgrs, 0, mgrs.length);
+				newMgrs[mgrs.length] = manager;
+				mgrs = newMgrs;
+			}
+			index.put(manager.getProperty(), mgrs);
+			theManagerIndex = java.util.Collections.unmodifiableMap(index);
 		}
 		for(PrismsSession s : getSessions())
 			s.addPropertyChangeListener(manager.getProperty(), manager);
@@ -449,11 +483,10 @@ public class PrismsApplication
 	 */
 	public <T> PropertyManager<T> [] getManagers(PrismsProperty<T> property)
 	{
-		PropertyManager<T> [] ret = new PropertyManager [0];
-		for(PropertyManager<?> pm : theManagers)
-			if(pm.getProperty().equals(property))
-				ret = org.qommons.ArrayUtils.add(ret, (PropertyManager<T>) pm);
-		return ret;
+		PropertyManager<?> [] ret = theManagerIndex.get(property);
+		if(ret == null)
+			return new PropertyManager [0];
+		return (PropertyManager<T> []) ret.clone();
 	}
 
 	/**
@@ -546,20 +579,20 @@ public class PrismsApplication
 	 */
 	public <T> T getGlobalProperty(PrismsProperty<T> propName)
 	{
+		PropertyManager<?> [] managers = theManagerIndex.get(propName);
+		if(managers == null)
+			return null;
 		T ret = null;
-		for(PropertyManager<?> manager : theManagers)
+		for(PropertyManager<?> manager : managers)
 		{
-			if(manager.getProperty() != null && manager.getProperty().equals(propName))
+			if(ret == null)
+				ret = ((PropertyManager<T>) manager).getApplicationValue(this);
+			else
 			{
-				if(ret == null)
-					ret = ((PropertyManager<T>) manager).getApplicationValue(this);
-				else
-				{
-					T temp = ((PropertyManager<T>) manager).getApplicationValue(this);
-					if(temp != null && !ret.equals(temp))
-						throw new IllegalStateException("Managers have two different values for"
-							+ " property " + propName);
-				}
+				T temp = ((PropertyManager<T>) manager).getApplicationValue(this);
+				if(temp != null && !ret.equals(temp))
+					throw new IllegalStateException("Managers have two different values for"
+						+ " property " + propName);
 			}
 		}
 		return ret;
@@ -611,7 +644,7 @@ public class PrismsApplication
 		Object... eventProps)
 	{
 		PrismsPCE<T> propEvt = createPCE(prop, null, value, eventProps);
-		PrismsPCL<T> [] listeners = getGlobalPropertyChangeListeners(prop);
+		PrismsPCL<T> [] listeners = thePCLs.getListeners(prop);
 		PropertyManager<T> manager = null;
 		TrackNode [] track = new TrackNode [3];
 		PrismsTransaction trans = theEnv.getTransaction();
@@ -619,11 +652,16 @@ public class PrismsApplication
 		track[1] = prisms.util.PrismsUtils.track(trans, "Property " + prop.getName());
 		try
 		{
-			synchronized(getPropertyLock(prop))
+			PrismsPropertyLock lock = getPropertyLock(prop);
+			lock.lockWrite();
+			try
 			{
-				for(PropertyManager<?> mgr : theManagers)
+				PropertyManager<?> [] managers = theManagerIndex.get(prop);
+				if(managers == null)
+					managers = new PropertyManager<?> [0];
+				for(PropertyManager<?> mgr : managers)
 				{
-					if(mgr != manager && mgr.getProperty().equals(prop))
+					if(mgr != manager)
 					{
 						PropertyManager<T> propMgr = (PropertyManager<T>) mgr;
 						if(manager == null && propMgr.getApplicationValue(this) != null)
@@ -662,21 +700,14 @@ public class PrismsApplication
 						if(!thePropertyStack.containsKey(prop))
 							break;
 					}
-					for(PrismsSession session : getSessions())
-					{
-						if(session == fromSession)
-							continue;
-						T sessionValue = session.getProperty(prop);
-						if(manager == null && !org.qommons.ArrayUtils.equals(sessionValue, value))
-							session.setProperty(prop, sessionValue, eventProps);
-						else if(manager != null
-							&& !manager.isValueCorrect(session, session.getProperty(prop)))
-							session.setProperty(prop, manager.getCorrectValue(session), eventProps);
-					}
+					markStale(fromSession, prop, manager, value, eventProps);
 				} finally
 				{
 					thePropertyStack.remove(prop);
 				}
+			} finally
+			{
+				lock.unlockWrite();
 			}
 		} finally
 		{
@@ -716,9 +747,198 @@ public class PrismsApplication
 	// }
 	// }
 
+	/**
+	 * Keeps track of the sessions whose value of a property may not be correct after a change to
+	 * the property's global value. Each session is represented by its slot in the bitmap.
+	 */
+	private static class StaleSessions<T>
+	{
+		final java.util.BitSet theStale;
+
+		PropertyManager<T> theManager;
+
+		T theValue;
+
+		Object [] theEventProps;
+
+		StaleSessions()
+		{
+			theStale = new java.util.BitSet();
+		}
+	}
+
+	/**
+	 * Marks all sessions but the originating one as possibly having a stale value for a property.
+	 * Each session checks its value the next time it runs its tasks (see
+	 * {@link #checkStaleProperties(PrismsSession)}), so the checks are moved off of the thread
+	 * changing the property rather than avoided. The session of the current transaction, if any,
+	 * is checked immediately. Other sessions are flushed by the session task worker if there is
+	 * one. Otherwise, sessions holding a request open for events are woken to run their checks.
+	 */
+	private <T> void markStale(PrismsSession fromSession, PrismsProperty<T> prop,
+		PropertyManager<T> manager, T value, Object [] eventProps)
+	{
+		StaleSessions<T> stale;
+		while(true)
+		{
+			stale = (StaleSessions<T>) theStaleSessions.get(prop);
+			if(stale == null)
+			{
+				stale = new StaleSessions<T>();
+				StaleSessions<T> old = (StaleSessions<T>) theStaleSessions.putIfAbsent(prop, stale);
+				if(old != null)
+					stale = old;
+			}
+			synchronized(stale)
+			{
+				/* checkStaleProperty removes an entry when its last session has checked it. If that
+				 * happened since we got the entry, bits set on it would never be seen. */
+				if(theStaleSessions.get(prop) != stale)
+					continue;
+				stale.theManager = manager;
+				stale.theValue = value;
+				stale.theEventProps = eventProps;
+				synchronized(theSessionSlots)
+				{
+					stale.theStale.or(theSessionSlots);
+				}
+				if(fromSession != null && fromSession.theAppSlot >= 0)
+					stale.theStale.clear(fromSession.theAppSlot);
+				if(stale.theStale.isEmpty())
+					theStaleSessions.remove(prop, stale);
+			}
+			break;
+		}
+		PrismsTransaction trans = theEnv.getTransaction();
+		if(trans != null && trans.getSession() != null && trans.getSession() != fromSession
+			&& trans.getSession().getApp() == this)
+			checkStaleProperty(trans.getSession(), prop, stale);
+		Worker worker = theEnv.getSessionTaskWorker();
+		for(PrismsSession session : getSessions())
+		{
+			if(session == fromSession)
+				continue;
+			if(worker != null)
+				flushSessionTasks(session, worker);
+			else
+				session.wakeEventWaiters();
+		}
+	}
+
+	/**
+	 * @param session The session to check
+	 * @return Whether the session may have a stale value for any global property
+	 */
+	boolean hasStaleProperties(PrismsSession session)
+	{
+		if(theStaleSessions.isEmpty() || session.theAppSlot < 0)
+			return false;
+		for(StaleSessions<?> stale : theStaleSessions.values())
+			synchronized(stale)
+			{
+				if(stale.theStale.get(session.theAppSlot))
+					return true;
+			}
+		return false;
+	}
+
+	/**
+	 * Makes sure a session's values are correct for all global properties that have changed since
+	 * the session last checked
+	 * 
+	 * @param session The session to check
+	 * @return Whether any of the session's properties needed checking
+	 */
+	boolean checkStaleProperties(PrismsSession session)
+	{
+		if(theStaleSessions.isEmpty() || session.theAppSlot < 0)
+			return false;
+		boolean ret = false;
+		for(java.util.Map.Entry<PrismsProperty<?>, StaleSessions<?>> entry : theStaleSessions
+			.entrySet())
+			ret |= checkStaleProperty(session, (PrismsProperty<Object>) entry.getKey(),
+				(StaleSessions<Object>) entry.getValue());
+		return ret;
+	}
+
+	private <T> boolean checkStaleProperty(PrismsSession session, PrismsProperty<T> prop,
+		StaleSessions<T> stale)
+	{
+		PropertyManager<T> manager;
+		T value;
+		Object [] eventProps;
+		synchronized(stale)
+		{
+			if(!stale.theStale.get(session.theAppSlot))
+				return false;
+			stale.theStale.clear(session.theAppSlot);
+			manager = stale.theManager;
+			value = stale.theValue;
+			eventProps = stale.theEventProps;
+			if(stale.theStale.isEmpty())
+				theStaleSessions.remove(prop, stale);
+		}
+		/* Only read the global state under the lock. Setting the session's value may fire listeners
+		 * that set the global property, which would need the write lock. */
+		boolean set = false;
+		T newValue = null;
+		PrismsPropertyLock lock = getPropertyLock(prop);
+		lock.lockRead();
+		try
+		{
+			T sessionValue = session.getProperty(prop);
+			if(manager == null && !org.qommons.ArrayUtils.equals(sessionValue, value))
+			{
+				set = true;
+				newValue = sessionValue;
+			}
+			else if(manager != null && !manager.isValueCorrect(session, sessionValue))
+			{
+				set = true;
+				newValue = manager.getCorrectValue(session);
+			}
+		} finally
+		{
+			lock.unlockRead();
+		}
+		if(set)
+			session.setProperty(prop, newValue, eventProps);
+		return true;
+	}
+
+	private void allocateSlot(PrismsSession session)
+	{
+		synchronized(theSessionSlots)
+		{
+			if(session.theAppSlot >= 0)
+				return;
+			session.theAppSlot = theSessionSlots.nextClearBit(0);
+			theSessionSlots.set(session.theAppSlot);
+		}
+	}
+
+	private void releaseSlot(PrismsSession session)
+	{
+		int slot = session.theAppSlot;
+		if(slot < 0)
+			return;
+		for(StaleSessions<?> stale : theStaleSessions.values())
+			synchronized(stale)
+			{
+				stale.theStale.clear(slot);
+			}
+		synchronized(theSessionSlots)
+		{
+			session.theAppSlot = -1;
+			theSessionSlots.clear(slot);
+		}
+	}
+
 	/**
 	 * A lock for a given property so that two set operations do not occur on the same property at
-	 * the same time
+	 * the same time. Operations that only need to read global state may share the lock. Property
+	 * values themselves may always be read without locking. The lock keeps statistics on how long
+	 * threads wait to acquire it.
 	 */
 	public static class PrismsPropertyLock
 	{
@@ -731,6 +951,16 @@ public class PrismsApplication
 		/** The session that this lock is for */
 		public final PrismsSession session;
 
+		private final java.util.concurrent.locks.ReentrantReadWriteLock theLock;
+
+		private final java.util.concurrent.atomic.AtomicLong theAcquisitions;
+
+		private final java.util.concurrent.atomic.AtomicLong theContentions;
+
+		private final java.util.concurrent.atomic.AtomicLong theWaitTime;
+
+		private final java.util.concurrent.atomic.AtomicLong theMaxWait;
+
 		/**
 		 * @param prop The property that this lock represents
 		 * @param ap The application that this lock is for
@@ -741,6 +971,74 @@ public class PrismsApplication
 			property = prop;
 			app = ap;
 			session = sess;
+			theLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+			theAcquisitions = new java.util.concurrent.atomic.AtomicLong();
+			theContentions = new java.util.concurrent.atomic.AtomicLong();
+			theWaitTime = new java.util.concurrent.atomic.AtomicLong();
+			theMaxWait = new java.util.concurrent.atomic.AtomicLong();
+		}
+
+		/** Acquires this lock exclusively, for changing the property */
+		public void lockWrite()
+		{
+			acquire(theLock.writeLock());
+		}
+
+		/** Releases this lock after {@link #lockWrite()} */
+		public void unlockWrite()
+		{
+			theLock.writeLock().unlock();
+		}
+
+		/** Acquires this lock shared with other readers, for reading state related to the property */
+		public void lockRead()
+		{
+			acquire(theLock.readLock());
+		}
+
+		/** Releases this lock after {@link #lockRead()} */
+		public void unlockRead()
+		{
+			theLock.readLock().unlock();
+		}
+
+		private void acquire(java.util.concurrent.locks.Lock lock)
+		{
+			theAcquisitions.incrementAndGet();
+			if(lock.tryLock())
+				return;
+			long start = System.nanoTime();
+			lock.lock();
+			long wait = System.nanoTime() - start;
+			theContentions.incrementAndGet();
+			theWaitTime.addAndGet(wait);
+			long max = theMaxWait.get();
+			while(wait > max && !theMaxWait.compareAndSet(max, wait))
+				max = theMaxWait.get();
+		}
+
+		/** @return The number of times this lock has been acquired */
+		public long getAcquisitionCount()
+		{
+			return theAcquisitions.get();
+		}
+
+		/** @return The number of times a thread has had to wait to acquire this lock */
+		public long getContentionCount()
+		{
+			return theContentions.get();
+		}
+
+		/** @return The total time (in milliseconds) that threads have waited to acquire this lock */
+		public float getTotalWaitTime()
+		{
+			return theWaitTime.get() / 1000000f;
+		}
+
+		/** @return The longest time (in milliseconds) that a thread has waited to acquire this lock */
+		public float getMaxWaitTime()
+		{
+			return theMaxWait.get() / 1000000f;
 		}
 
 		@Override
@@ -760,7 +1058,7 @@ public class PrismsApplication
 		}
 	}
 
-	private Object getPropertyLock(PrismsProperty<?> property)
+	private PrismsPropertyLock getPropertyLock(PrismsProperty<?> property)
 	{
 		PrismsPropertyLock ret = thePropertyLocks.get(property);
 		if(ret == null)
@@ -778,6 +1076,36 @@ public class PrismsApplication
 		return ret;
 	}
 
+	/**
+	 * Gets the property locks in this application and its sessions that threads have waited the
+	 * longest to acquire
+	 * 
+	 * @param count The maximum number of locks to return
+	 * @return The property locks with the greatest total wait time, most contended first. Locks
+	 *         that have never been contended are not included.
+	 */
+	public PrismsPropertyLock [] getContendedPropertyLocks(int count)
+	{
+		ArrayList<PrismsPropertyLock> locks = new ArrayList<PrismsPropertyLock>();
+		for(PrismsPropertyLock lock : thePropertyLocks.values())
+			if(lock.getContentionCount() > 0)
+				locks.add(lock);
+		for(PrismsSession session : theSessions)
+			for(PrismsPropertyLock lock : session.getPropertyLocks())
+				if(lock.getContentionCount() > 0)
+					locks.add(lock);
+		java.util.Collections.sort(locks, new java.util.Comparator<PrismsPropertyLock>()
+		{
+			public int compare(PrismsPropertyLock o1, PrismsPropertyLock o2)
+			{
+				return Float.compare(o2.getTotalWaitTime(), o1.getTotalWaitTime());
+			}
+		});
+		if(locks.size() > count)
+			locks.subList(count, locks.size()).clear();
+		return locks.toArray(new PrismsPropertyLock [locks.size()]);
+	}
+
 	/**
 	 * Registers to listen for a global property change. This may be used by managers of other
 	 * properties whose value depends on the value of other proprties. This should <b>NEVER</b> be
@@ -814,7 +1142,7 @@ public class PrismsApplication
 	 */
 	public <T> PrismsPCL<T> [] getGlobalPropertyChangeListeners(PrismsProperty<T> propName)
 	{
-		return thePCLs.getListeners(propName);
+		return thePCLs.getListeners(propName).clone();
 	}
 
 	/**
@@ -860,14 +1188,12 @@ public class PrismsApplication
 	 */
 	public void runSessionTask(PrismsSession session, final SessionTask task, boolean excludeSession)
 	{
-		Thread ct = null;
 		if(session != null && !excludeSession)
 		{
 			TrackNode event = null;
 			PrismsTransaction trans = getEnvironment().getTransaction();
 			if(trans != null)
 			{
-				ct = trans.getThread();
 				event = trans.getTracker().start(
 					"PRISMS: Running session task " + prisms.util.PrismsUtils.taskToString(task)
 						+ " synchronously");
@@ -881,13 +1207,15 @@ public class PrismsApplication
 					trans.getTracker().end(event);
 			}
 		}
+		/* The origin's stack trace is only needed if the task fails in a session, so one throwable
+		 * is shared by all sessions and its trace is not materialized until then */
+		final Throwable origin = new Throwable();
+		Worker worker = getEnvironment().getSessionTaskWorker();
 		for(PrismsSession session_i : getSessions())
 		{
 			if(session_i != session)
 			{
 				final PrismsSession s = session_i;
-				final StackTraceElement [] trace = (ct != null ? ct : Thread.currentThread())
-					.getStackTrace();
 				s.runEventually(new Runnable()
 				{
 					public void run()
@@ -905,7 +1233,8 @@ public class PrismsApplication
 						} catch(RuntimeException e)
 						{
 							e.setStackTrace(org.qommons.QommonsUtils.patchStackTraces(
-								e.getStackTrace(), trace, getClass().getName(), "run"));
+								e.getStackTrace(), origin.getStackTrace(), getClass().getName(),
+								"run"));
 							throw e;
 						} finally
 						{
@@ -920,10 +1249,67 @@ public class PrismsApplication
 						return "Session Task Runner";
 					}
 				});
+				if(worker != null)
+					flushSessionTasks(s, worker);
 			}
 		}
 	}
 
+	/**
+	 * Runs a session's queued tasks in the background if the session is idle, so that they do not
+	 * have to wait for the session's next request
+	 * 
+	 * @param session The session to run the tasks of
+	 * @param worker The worker to run the tasks with
+	 */
+	private void flushSessionTasks(final PrismsSession session, Worker worker)
+	{
+		if(session.isBusy() || !session.theTaskFlushScheduled.compareAndSet(false, true))
+			return;
+		try
+		{
+			worker.run(new Runnable()
+			{
+				public void run()
+				{
+					session.theTaskFlushScheduled.set(false);
+					if(session.isBusy())
+						return; // The session's request will run its tasks
+					PrismsTransaction trans = theEnv.transact(session,
+						PrismsTransaction.Stage.external);
+					try
+					{
+						session.runTasksIfIdle();
+					} finally
+					{
+						theEnv.finish(trans);
+					}
+				}
+
+				@Override
+				public String toString()
+				{
+					return "Session task flush for " + session;
+				}
+			}, new Worker.ErrorListener()
+			{
+				public void error(Error error)
+				{
+					log.error("Could not run session tasks", error);
+				}
+
+				public void runtime(RuntimeException ex)
+				{
+					log.error("Could not run session tasks", ex);
+				}
+			});
+		} catch(java.util.concurrent.RejectedExecutionException e)
+		{
+			// The worker is saturated. The tasks will run at the session's next request.
+			session.theTaskFlushScheduled.set(false);
+		}
+	}
+
 	/**
 	 * Fires a plugin event for all sessions in an application
 	 * 
@@ -982,6 +1368,7 @@ public class PrismsApplication
 	 */
 	public void configureSession(PrismsSession session)
 	{
+		allocateSlot(session);
 		addPropertyManagers(session);
 		addEventListeners(session);
 		addSessionMonitors(session);
@@ -1011,32 +1398,39 @@ public class PrismsApplication
 	}
 
 	/**
-	 * Schedules a task to run at a specific time. The task will be run at or after the specified
-	 * time at the next time this application is called.
+	 * Schedules a task to run at a specific time. The task will be run at or soon after the
+	 * specified time in one of this application's scheduler threads.
 	 * 
 	 * @param task The task to run
 	 * @param execTime The time to execute the task after
 	 */
 	public void scheduleOneTimeTask(Runnable task, long execTime)
 	{
+		ScheduledTask sTask = new ScheduledTask(task, execTime, 0);
 		synchronized(theOneTimeTasks)
 		{
-			theOneTimeTasks.add(new ScheduledTask(task, execTime, 0));
+			theOneTimeTasks.add(sTask);
+			sTask.theFuture = getScheduler().schedule(sTask,
+				execTime - System.currentTimeMillis(), java.util.concurrent.TimeUnit.MILLISECONDS);
 		}
 	}
 
 	/**
-	 * Schedules a task to run at a given frequency. The task will be run at the given frequency at
-	 * the highest, depending on when and how often this application is called.
+	 * Schedules a task to run at a given frequency in one of this application's scheduler threads.
+	 * The task is first run immediately, then again each time the given amount of time passes after
+	 * the previous run finishes, so a task never overlaps itself.
 	 * 
 	 * @param task The task to run
 	 * @param freq The minimum frequency to run the task at
 	 */
 	public void scheduleRecurringTask(Runnable task, long freq)
 	{
+		ScheduledTask sTask = new ScheduledTask(task, System.currentTimeMillis(), freq);
 		synchronized(theOneTimeTasks)
 		{
-			theRecurringTasks.add(new ScheduledTask(task, System.currentTimeMillis(), freq));
+			theRecurringTasks.add(sTask);
+			sTask.theFuture = getScheduler().scheduleWithFixedDelay(sTask, 0, freq,
+				java.util.concurrent.TimeUnit.MILLISECONDS);
 		}
 	}
 
@@ -1051,14 +1445,77 @@ public class PrismsApplication
 		{
 			java.util.Iterator<ScheduledTask> iter = theRecurringTasks.iterator();
 			while(iter.hasNext())
-				if(task.equals(iter.next().theTask))
+			{
+				ScheduledTask sTask = iter.next();
+				if(task.equals(sTask.theTask))
 				{
 					iter.remove();
+					sTask.theFuture.cancel(false);
 					break;
 				}
+			}
+		}
+		purgeScheduler();
+	}
+
+	/** @return All tasks scheduled in this application that have yet to run or are recurring */
+	public ScheduledTask [] getScheduledTasks()
+	{
+		synchronized(theOneTimeTasks)
+		{
+			ScheduledTask [] ret = new ScheduledTask [theOneTimeTasks.size()
+				+ theRecurringTasks.size()];
+			int i = 0;
+			for(ScheduledTask task : theOneTimeTasks)
+				ret[i++] = task;
+			for(ScheduledTask task : theRecurringTasks)
+				ret[i++] = task;
+			return ret;
 		}
 	}
 
+	/**
+	 * Gets the scheduler that runs this application's scheduled tasks, creating it if needed. Must
+	 * be called while synchronized on theOneTimeTasks. The scheduler has several threads so that a
+	 * task that blocks (e.g. a client tree heartbeat waiting on a remote call) does not delay every
+	 * other session's tasks. Idle threads time out.
+	 */
+	private java.util.concurrent.ScheduledThreadPoolExecutor getScheduler()
+	{
+		if(isDestroyed)
+			throw new IllegalStateException("Application " + theName + " has been destroyed");
+		if(theScheduler == null)
+		{
+			int threads = Math.max(SCHEDULER_THREADS, Runtime.getRuntime().availableProcessors());
+			final java.util.concurrent.atomic.AtomicInteger threadCount;
+			threadCount = new java.util.concurrent.atomic.AtomicInteger();
+			theScheduler = new java.util.concurrent.ScheduledThreadPoolExecutor(threads,
+				new java.util.concurrent.ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread ret = new Thread(r, "PRISMS Scheduler: " + theName + " #"
+							+ threadCount.incrementAndGet());
+						ret.setDaemon(true);
+						return ret;
+					}
+				});
+			theScheduler.setKeepAliveTime(60, java.util.concurrent.TimeUnit.SECONDS);
+			theScheduler.allowCoreThreadTimeOut(true);
+			theScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+			theScheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+		}
+		return theScheduler;
+	}
+
+	/** Removes cancelled tasks from the scheduler's queue so they are not held until their time */
+	private void purgeScheduler()
+	{
+		java.util.concurrent.ScheduledThreadPoolExecutor scheduler = theScheduler;
+		if(scheduler != null)
+			scheduler.purge();
+	}
+
 	/**
 	 * Locks this application from user interaction or unlocks it
 	 * 
@@ -1185,56 +1642,46 @@ public class PrismsApplication
 	}
 
 	/**
-	 * Runs tasks that are scheduled with this application to be run
+	 * Runs one-time tasks that are due but which the scheduler has not yet gotten to. Scheduled
+	 * tasks are run by this application's scheduler; this method just allows callers to make sure
+	 * due tasks have been run before proceeding.
 	 * 
 	 * @return Whether there were any one-time tasks that needed to be run
 	 */
 	protected boolean runScheduledTasks()
 	{
-		boolean ret = false;
 		long currentTime = System.currentTimeMillis();
-		ScheduledTask [] tasks = new ScheduledTask [0];
+		ArrayList<ScheduledTask> tasks = null;
 		synchronized(theOneTimeTasks)
 		{
-			java.util.Iterator<ScheduledTask> it = theOneTimeTasks.iterator();
-			while(it.hasNext())
-			{
-				ScheduledTask task = it.next();
-				if(task.shouldRun(currentTime))
+			for(ScheduledTask task : theOneTimeTasks)
+				if(task.theTime <= currentTime)
 				{
-					tasks = org.qommons.ArrayUtils.add(tasks, task);
-					it.remove();
-					ret = true;
+					if(tasks == null)
+						tasks = new ArrayList<ScheduledTask>();
+					tasks.add(task);
 				}
-			}
-			tasks = org.qommons.ArrayUtils.mergeInclusive(ScheduledTask.class, tasks,
-				theRecurringTasks.toArray(new ScheduledTask [0]));
 		}
-		if(tasks.length > 0)
+		if(tasks == null)
+			return false;
+		boolean ret = false;
+		PrismsTransaction trans = theEnv.getTransaction();
+		TrackNode track = prisms.util.PrismsUtils.track(trans, "Scheduled Tasks");
+		try
 		{
-			PrismsTransaction trans = theEnv.getTransaction();
-			TrackNode track = prisms.util.PrismsUtils.track(trans, "Scheduled Tasks");
-			try
-			{
-				for(ScheduledTask t : tasks)
-				{
-					TrackNode event = prisms.util.PrismsUtils.track(trans, t);
-					try
-					{
-						t.run(currentTime);
-					} catch(Throwable e)
-					{
-						log.error("Could not execute scheduled task " + t, e);
-					} finally
-					{
-						prisms.util.PrismsUtils.end(trans, event);
-					}
-				}
-			} finally
+			for(ScheduledTask t : tasks)
 			{
-				prisms.util.PrismsUtils.end(trans, track);
+				// The scheduler may run the task first
+				if(!t.theFuture.cancel(false))
+					continue;
+				ret = true;
+				t.run();
 			}
+		} finally
+		{
+			prisms.util.PrismsUtils.end(trans, track);
 		}
+		purgeScheduler();
 		return ret;
 	}
 
@@ -1358,6 +1805,8 @@ public class PrismsApplication
 					session.addEventListener(pel);
 				else
 					session.addEventListener(elt.theEventName, pel);
+				if(elt.theConfig != null && elt.theConfig.is("async", false))
+					session.setAsyncEventListener(pel, true);
 			}
 		} finally
 		{
@@ -1414,6 +1863,7 @@ public class PrismsApplication
 	void removeSession(PrismsSession session)
 	{
 		theSessions.remove(session);
+		releaseSlot(session);
 		for(SessionWatcher watcher : theWatchers)
 		{
 			try
@@ -1477,6 +1927,15 @@ public class PrismsApplication
 	/** Called when the application is no longer accessible or needed */
 	public void destroy()
 	{
+		synchronized(theOneTimeTasks)
+		{
+			isDestroyed = true;
+			if(theScheduler != null)
+				theScheduler.shutdownNow();
+			theScheduler = null;
+			theOneTimeTasks.clear();
+			theRecurringTasks.clear();
+		}
 		java.util.Iterator<PrismsSession> iter = theSessions.iterator();
 		while(iter.hasNext())
 		{
@@ -1501,14 +1960,28 @@ public class PrismsApplication
 		}
 	}
 
-	private static class ScheduledTask
+	/**
+	 * A task scheduled to run in an application. Keeps track of how late the task's runs have
+	 * started relative to their scheduled time.
+	 */
+	public class ScheduledTask implements Runnable
 	{
 		final Runnable theTask;
 
-		private long theTime;
+		volatile long theTime;
 
 		private final long theFrequency;
 
+		java.util.concurrent.ScheduledFuture<?> theFuture;
+
+		private volatile int theRunCount;
+
+		private volatile long theLastLag;
+
+		private volatile long theMaxLag;
+
+		private volatile long theTotalLag;
+
 		ScheduledTask(Runnable task, long time, long freq)
 		{
 			theTask = task;
@@ -1516,19 +1989,85 @@ public class PrismsApplication
 			theFrequency = freq;
 		}
 
-		boolean shouldRun(long currentTime)
+		/** @return The task that is scheduled */
+		public Runnable getTask()
 		{
-			return currentTime >= theTime;
+			return theTask;
 		}
 
-		boolean run(long currentTime)
+		/** @return The frequency at which this task runs, or 0 if it is a one-time task */
+		public long getFrequency()
 		{
-			if(currentTime < theTime)
-				return false;
-			if(theFrequency > 0)
-				theTime = currentTime + theFrequency;
-			theTask.run();
-			return true;
+			return theFrequency;
+		}
+
+		/** @return The next time this task is scheduled to run */
+		public long getNextRunTime()
+		{
+			return theTime;
+		}
+
+		/** @return The number of times this task has run */
+		public int getRunCount()
+		{
+			return theRunCount;
+		}
+
+		/**
+		 * @return The amount of time (in milliseconds) by which the start of this task's last run
+		 *         was later than the time it was scheduled for
+		 */
+		public long getLastLag()
+		{
+			return theLastLag;
+		}
+
+		/** @return The greatest lag of any of this task's runs */
+		public long getMaxLag()
+		{
+			return theMaxLag;
+		}
+
+		/** @return The average lag of this task's runs */
+		public float getAverageLag()
+		{
+			int count = theRunCount;
+			return count == 0 ? 0 : theTotalLag * 1.0f / count;
+		}
+
+		public void run()
+		{
+			long start = System.currentTimeMillis();
+			long lag = start - theTime;
+			if(lag < 0)
+				lag = 0;
+			theLastLag = lag;
+			if(lag > theMaxLag)
+				theMaxLag = lag;
+			theTotalLag += lag;
+			theRunCount++;
+			if(theFrequency <= 0)
+			{
+				synchronized(theOneTimeTasks)
+				{
+					theOneTimeTasks.remove(this);
+				}
+			}
+			PrismsTransaction trans = theEnv.transact(PrismsApplication.this);
+			TrackNode event = prisms.util.PrismsUtils.track(trans, this);
+			try
+			{
+				theTask.run();
+			} catch(Throwable e)
+			{
+				log.error("Could not execute scheduled task " + this, e);
+			} finally
+			{
+				prisms.util.PrismsUtils.end(trans, event);
+				theEnv.finish(trans);
+				if(theFrequency > 0)
+					theTime = System.currentTimeMillis() + theFrequency;
+			}
 		}
 
 		@Override
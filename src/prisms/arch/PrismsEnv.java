@@ -169,6 +169,10 @@ public class PrismsEnv implements org.qommons.Sealable
 
 	private Worker theWorker;
 
+	private Worker theAsyncWorker;
+
+	private Worker theSessionTaskWorker;
+
 	private prisms.logging.PrismsLogger theLogger;
 
 	private PrismsApplication theManagerApp;
@@ -183,9 +187,33 @@ public class PrismsEnv implements org.qommons.Sealable
 
 	private final java.util.Map<String, PrismsConfig []> theGMonitorConfigs;
 
-	private final prisms.util.ResourcePool<PrismsTransaction> theTransactionPool;
+	/**
+	 * Holds the transaction state of a single thread. Only the owning thread modifies the holder, so
+	 * transaction lookups and reuse require no locking. The active transaction is volatile so that
+	 * other threads (e.g. the runaway checker) can see it.
+	 */
+	private static class TransactionHolder
+	{
+		final Thread theThread;
+
+		volatile PrismsTransaction theActive;
+
+		/** A finished transaction kept for reuse by the next transaction on this thread */
+		PrismsTransaction theCached;
 
-	private final java.util.concurrent.ConcurrentHashMap<Thread, PrismsTransaction> theActiveTransactions;
+		TransactionHolder(Thread thread)
+		{
+			theThread = thread;
+		}
+	}
+
+	private final ThreadLocal<TransactionHolder> theTransactions;
+
+	/**
+	 * The holders of threads with an active transaction in this environment, for monitoring. Holders
+	 * are removed when their transaction finishes so that finished threads are not retained.
+	 */
+	private final java.util.concurrent.ConcurrentHashMap<Thread, TransactionHolder> theTransactionHolders;
 
 	private final java.util.concurrent.ConcurrentHashMap<Long, long []> theUserCPU;
 
@@ -204,20 +232,15 @@ public class PrismsEnv implements org.qommons.Sealable
 		theGMConfigs = new java.util.HashMap<String, PrismsConfig []>();
 		theGEventConfigs = new java.util.HashMap<String, PrismsConfig []>();
 		theGMonitorConfigs = new java.util.HashMap<String, PrismsConfig []>();
-		theTransactionPool = new prisms.util.ResourcePool<PrismsTransaction>(
-			new prisms.util.ResourcePool.ResourceCreator<PrismsTransaction>()
+		theTransactions = new ThreadLocal<TransactionHolder>()
+		{
+			@Override
+			protected TransactionHolder initialValue()
 			{
-				public PrismsTransaction createResource()
-					throws prisms.util.ResourcePool.ResourceCreationException
-				{
-					return new PrismsTransaction(getDefaultPrintConfig());
-				}
-
-				public void destroyResource(PrismsTransaction resource)
-				{
-				}
-			}, Integer.MAX_VALUE);
-		theActiveTransactions = new java.util.concurrent.ConcurrentHashMap<Thread, PrismsTransaction>();
+				return new TransactionHolder(Thread.currentThread());
+			}
+		};
+		theTransactionHolders = new java.util.concurrent.ConcurrentHashMap<Thread, TransactionHolder>();
 		theUserCPU = new java.util.concurrent.ConcurrentHashMap<Long, long []>();
 		theDefaultPrintConfig = new GlobalPrintConfig();
 		theDefaultPrintConfig.setPrintThreshold(1500);
@@ -261,6 +284,22 @@ public class PrismsEnv implements org.qommons.Sealable
 		theWorker = worker;
 	}
 
+	void setAsyncWorker(Worker worker)
+	{
+		if(isSealed)
+			throw new IllegalStateException("Cannot set the asynchronous worker after the"
+				+ " environment has been configured");
+		theAsyncWorker = worker;
+	}
+
+	void setSessionTaskWorker(Worker worker)
+	{
+		if(isSealed)
+			throw new IllegalStateException("Cannot set the session task worker after the"
+				+ " environment has been configured");
+		theSessionTaskWorker = worker;
+	}
+
 	void setTrackConfigs(org.qommons.TrackerSet.TrackConfig[] trackConfigs)
 	{
 		if(isSealed)
@@ -331,6 +370,26 @@ public class PrismsEnv implements org.qommons.Sealable
 		return theWorker;
 	}
 
+	/**
+	 * @return The worker that this PRISMS environment runs asynchronous session work on (e.g.
+	 *         {@link PrismsSession#processAsync(org.json.simple.JSONObject)} and remote calls),
+	 *         or null if such work should be run on the {@link #getWorker() environment's worker}
+	 */
+	public Worker getAsyncWorker()
+	{
+		return theAsyncWorker;
+	}
+
+	/**
+	 * @return The worker that runs tasks queued by
+	 *         {@link PrismsApplication#runSessionTask(PrismsSession, PrismsApplication.SessionTask, boolean)}
+	 *         for idle sessions, or null if such tasks wait for each session's next request
+	 */
+	public Worker getSessionTaskWorker()
+	{
+		return theSessionTaskWorker;
+	}
+
 	/** @return Default tracking configs used for tracking unless overridden in an application */
 	public TrackerSet.TrackConfig[] getTrackConfigs()
 	{
@@ -482,23 +541,17 @@ public class PrismsEnv implements org.qommons.Sealable
 	 */
 	public PrismsTransaction transact(PrismsSession session, PrismsTransaction.Stage stage)
 	{
-		Thread ct = Thread.currentThread();
-		PrismsTransaction ret = theActiveTransactions.get(ct);
+		TransactionHolder holder = theTransactions.get();
+		PrismsTransaction ret = holder.theActive;
 		if(ret != null)
 		{
 			ret.theDuplicateStartCount++;
 			return ret;
 		}
-		try
-		{
-			ret = theTransactionPool.getResource(true);
-		} catch(prisms.util.ResourcePool.ResourceCreationException e)
-		{
-			// This exception is not thrown from this implementation
-			throw new IllegalStateException("Should not be thrown from here!", e);
-		}
+		ret = newTransaction(holder);
 		ret.init(session, stage);
-		theActiveTransactions.put(ct, ret);
+		holder.theActive = ret;
+		theTransactionHolders.put(holder.theThread, holder);
 		return ret;
 	}
 
@@ -512,23 +565,27 @@ public class PrismsEnv implements org.qommons.Sealable
 	 */
 	public PrismsTransaction transact(PrismsApplication app)
 	{
-		Thread ct = Thread.currentThread();
-		PrismsTransaction ret = theActiveTransactions.get(ct);
+		TransactionHolder holder = theTransactions.get();
+		PrismsTransaction ret = holder.theActive;
 		if(ret != null)
 		{
 			ret.theDuplicateStartCount++;
 			return ret;
 		}
-		try
-		{
-			ret = theTransactionPool.getResource(true);
-		} catch(prisms.util.ResourcePool.ResourceCreationException e)
-		{
-			// This exception is not thrown from this implementation
-			throw new IllegalStateException("Should not be thrown from here!", e);
-		}
+		ret = newTransaction(holder);
 		ret.init(app, PrismsTransaction.Stage.external);
-		theActiveTransactions.put(ct, ret);
+		holder.theActive = ret;
+		theTransactionHolders.put(holder.theThread, holder);
+		return ret;
+	}
+
+	private PrismsTransaction newTransaction(TransactionHolder holder)
+	{
+		PrismsTransaction ret = holder.theCached;
+		if(ret != null)
+			holder.theCached = null;
+		else
+			ret = new PrismsTransaction(getDefaultPrintConfig());
 		return ret;
 	}
 
@@ -539,7 +596,7 @@ public class PrismsEnv implements org.qommons.Sealable
 	 */
 	public PrismsTransaction getTransaction()
 	{
-		return theActiveTransactions.get(Thread.currentThread());
+		return theTransactions.get().theActive;
 	}
 
 	/**
@@ -556,32 +613,36 @@ public class PrismsEnv implements org.qommons.Sealable
 			return trans.getEvents();
 		}
 		org.json.simple.JSONArray ret = trans.finish();
-		theActiveTransactions.remove(Thread.currentThread());
-		theTransactionPool.releaseResource(trans);
+		TransactionHolder holder = theTransactions.get();
+		if(holder.theActive == trans)
+		{
+			holder.theActive = null;
+			holder.theCached = trans;
+			theTransactionHolders.remove(holder.theThread);
+		}
 		return ret;
 	}
 
 	/** @return All transactions that are active in this environment */
 	public PrismsTransaction [] getActiveTransactions()
 	{
-		java.util.Iterator<PrismsTransaction> iter = theActiveTransactions.values().iterator();
+		java.util.ArrayList<PrismsTransaction> ret = new java.util.ArrayList<PrismsTransaction>();
+		java.util.Iterator<TransactionHolder> iter = theTransactionHolders.values().iterator();
 		while(iter.hasNext())
 		{
-			PrismsTransaction trans = iter.next();
-			if(trans == null)
-				continue;
-			Thread thread = trans.getThread();
-			if(thread == null)
-				continue;
-			if(!thread.isAlive())
+			TransactionHolder holder = iter.next();
+			PrismsTransaction trans = holder.theActive;
+			if(!holder.theThread.isAlive())
 			{
-				if(!trans.isFinished())
+				if(trans != null && !trans.isFinished())
 					trans.clear();
 				iter.remove();
-				theTransactionPool.releaseResource(trans);
+				continue;
 			}
+			if(trans != null)
+				ret.add(trans);
 		}
-		return theActiveTransactions.values().toArray(new PrismsTransaction [0]);
+		return ret.toArray(new PrismsTransaction [ret.size()]);
 	}
 
 	void addUserCPU(prisms.arch.ds.User user, long cpuTime)
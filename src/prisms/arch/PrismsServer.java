@@ -285,6 +285,8 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 		final RemoteEventSerializer theSerializer;
 
+		final ResponseCompression theCompression;
+
 		/** The version of the client--only valid for M2M clients */
 		public final String version;
 
@@ -310,11 +312,13 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 		java.util.List<org.apache.commons.fileupload.FileItem> theUploads;
 
-		PrismsRequest(HttpServletRequest req, HttpServletResponse resp, RemoteEventSerializer serializer)
+		PrismsRequest(HttpServletRequest req, HttpServletResponse resp, RemoteEventSerializer serializer,
+			ResponseCompression compression)
 		{
 			httpRequest = req;
 			theResponse = resp;
 			theSerializer = serializer;
+			theCompression = compression;
 			if(org.apache.commons.fileupload.servlet.ServletFileUpload.isMultipartContent(req))
 			{
 				theUploads = new java.util.ArrayList<org.apache.commons.fileupload.FileItem>();
@@ -411,9 +415,18 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 		void send(JSONArray events) throws IOException
 		{
-			theResponse.setContentType("text/prisms-json");
-			java.io.PrintWriter out = theResponse.getWriter();
-			out.print(theSerializer.serialize(events));
+			send(httpRequest, theResponse, theSerializer, theCompression, events);
+		}
+
+		static void send(HttpServletRequest request, HttpServletResponse response, RemoteEventSerializer serializer,
+			ResponseCompression compression, JSONArray events) throws IOException
+		{
+			response.setContentType("text/prisms-json");
+			java.io.PrintWriter out = compression.getWriter(request, response);
+			if(serializer instanceof RemoteEventSerializer.Streaming)
+				((RemoteEventSerializer.Streaming) serializer).serialize(events, out, false);
+			else
+				out.print(serializer.serialize(events));
 			out.close();
 		}
 
@@ -863,44 +876,78 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			RemoteEventSerializer serializer = request.client.getSerializer();
 			if(serializer == null)
 				serializer = getSerializer();
+			boolean encodeUnicode = !request.client.isService() || compareVersions(request.version, "2.1.3") >= 0;
+			if(serializer instanceof RemoteEventSerializer.Streaming
+				&& !(response.shouldEncrypt && isEncrypting(request)))
+			{
+				/* Write the events straight to the response instead of building the whole serialized
+				 * string in memory first */
+				request.theResponse.setContentType(serializer.getContentType(response.toReturn));
+				java.io.Writer out = openWriter(request);
+				try
+				{
+					((RemoteEventSerializer.Streaming) serializer).serialize(response.toReturn, out, encodeUnicode);
+				} catch(java.io.NotSerializableException e)
+				{
+					try
+					{
+						((RemoteEventSerializer.Streaming) serializer).serialize(serializeError(), out,
+							encodeUnicode);
+					} catch(java.io.NotSerializableException e2)
+					{
+						throw new IllegalStateException("Could not serialize return events", e);
+					}
+				} finally
+				{
+					out.close();
+				}
+				return;
+			}
 			String str;
 			try
 			{
 				str = serializer.serialize(response.toReturn);
 			} catch(java.io.NotSerializableException e)
 			{
-				JSONArray send = new JSONArray();
-				send.add(org.qommons.QommonsUtils.rEventProps("method", "error", "message",
-					"Could not serialize return events"));
 				try
 				{
-					str = serializer.serialize(send);
+					str = serializer.serialize(serializeError());
 				} catch(java.io.NotSerializableException e2)
 				{
 					throw new IllegalStateException("Could not serialize return events", e);
 				}
 			}
-			if(!request.client.isService() || compareVersions(request.version, "2.1.3") >= 0)
+			if(encodeUnicode)
 				str = QommonsUtils.encodeUnicode(str);
 			if(response.shouldEncrypt)
 				str = encrypt(reqAuth, request, str);
 			request.theResponse.setContentType(serializer.getContentType(response.toReturn));
-			String acceptEncoding = request.httpRequest.getHeader("accept-encoding");
-			if(acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip"))
-			{
-				request.theResponse.setHeader("Content-Encoding", "gzip");
-				java.io.OutputStream os = request.theResponse.getOutputStream();
-				java.util.zip.GZIPOutputStream gzos = new java.util.zip.GZIPOutputStream(os);
-				java.io.PrintWriter out = new java.io.PrintWriter(gzos);
-				out.write(str);
-				out.close();
-			}
-			else
-			{
-				java.io.PrintWriter out = request.theResponse.getWriter();
-				out.write(str);
-				out.close();
-			}
+			java.io.Writer out = openWriter(request);
+			out.write(str);
+			out.close();
+		}
+
+		private JSONArray serializeError()
+		{
+			JSONArray send = new JSONArray();
+			send.add(org.qommons.QommonsUtils.rEventProps("method", "error", "message",
+				"Could not serialize return events"));
+			return send;
+		}
+
+		private java.io.Writer openWriter(PrismsRequest request) throws IOException
+		{
+			return theCompression.getWriter(request.httpRequest, request.theResponse);
+		}
+
+		/**
+		 * @param request The request to respond to
+		 * @return Whether {@link #encrypt(RequestAuthenticator, PrismsRequest, String)} actually encrypts content for
+		 *         the given request
+		 */
+		private boolean isEncrypting(PrismsRequest request)
+		{
+			return request.client.isService();
 		}
 
 		private String encrypt(PrismsAuthenticator.RequestAuthenticator reqAuth, PrismsRequest request, String text)
@@ -909,7 +956,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			/* TODO: For whatever reason, information encrypted by the server is not decrypted
 			 * correctly by the javascript dojo blowfish implementation on the HTML client. Pending
 			 * more extensive investigation, we'll just send information unencrypted. */
-			if(request.client.isService())
+			if(isEncrypting(request))
 				return reqAuth.encrypt(request.theResponse, text);
 			return text;
 		}
@@ -1109,6 +1156,10 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				else
 					return singleMessage(reqAuth, req, true, "restart");
 			}
+			/* Waiting for events must not hold a transaction open or the runaway checker would flag
+			 * every parked request */
+			if("waitEvents".equals(req.serverMethod))
+				return waitEvents(reqAuth);
 			final PrismsTransaction trans = getEnv().transact(theSession, PrismsTransaction.Stage.processEvent);
 			TrackNode track = trans.getTracker().start("Server Calls");
 			try
@@ -1141,6 +1192,23 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				// Do application methods (processEvent, generateImage, doDownload, doUpload)
 				if("processEvent".equals(req.serverMethod))
 					return process(reqAuth, event);
+				if("processEvents".equals(req.serverMethod))
+				{
+					/* Several events from one client interaction are processed in order under this single
+					 * request and transaction, and their results are returned together */
+					Object events = event.get("events");
+					if(!(events instanceof JSONArray))
+						return error(reqAuth, req, ErrorCode.RequestInvalid, "processEvents requires an events array");
+					JSONObject batch = PrismsSession.batch((JSONArray) events);
+					for(Object subEvt : (JSONArray) events)
+					{
+						if(!(subEvt instanceof JSONObject))
+							return error(reqAuth, req, ErrorCode.RequestInvalid, "Illegal event in batch: " + subEvt);
+						if(Boolean.TRUE.equals(((JSONObject) subEvt).get("prisms-synchronous")))
+							batch.put("prisms-synchronous", Boolean.TRUE);
+					}
+					return process(reqAuth, batch);
+				}
 				if(req.isWMS)
 				{
 					PrismsWmsRequest wmsReq = PrismsWmsRequest.parseWMS(req.httpRequest);
@@ -1257,7 +1325,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				TrackNode track = PrismsUtils.track(trans, "processAsync");
 				try
 				{
-					ret = theSession.processAsync(event, null);
+					ret = theSession.processAsync(event);
 				} finally
 				{
 					PrismsUtils.end(trans, track);
@@ -1274,6 +1342,45 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			return new PrismsResponse(reqAuth, ret, true);
 		}
 
+		/**
+		 * Parks the request on the session's outgoing queue until events are posted or the push hold time elapses
+		 * 
+		 * @param reqAuth The request authenticator for the request
+		 * @return The response containing the events posted to the session
+		 */
+		private PrismsResponse waitEvents(RequestAuthenticator reqAuth)
+		{
+			if(theClient.isService())
+				return new PrismsResponse(reqAuth, new JSONArray(), true);
+			// Run any session tasks first so that their results are available immediately
+			PrismsTransaction trans = getEnv().transact(theSession, PrismsTransaction.Stage.processEvent);
+			try
+			{
+				theSession.runTasks();
+			} finally
+			{
+				getEnv().finish(trans);
+			}
+			long maxHold = thePushMaxHold;
+			long exp = untilExpires();
+			if(exp - WARN_EXPIRE_THRESHOLD < maxHold)
+				maxHold = exp - WARN_EXPIRE_THRESHOLD;
+			JSONArray ret;
+			if(maxHold > 0)
+				ret = theSession.waitForEvents(maxHold, thePushBatchWindow);
+			else
+				ret = theSession.getEvents();
+			exp = untilExpires();
+			if(exp <= WARN_EXPIRE_THRESHOLD)
+			{
+				JSONObject warnExpireEvent = new JSONObject();
+				warnExpireEvent.put("method", "warnExpire");
+				warnExpireEvent.put("expireTime", Long.valueOf(exp));
+				ret.add(warnExpireEvent);
+			}
+			return new PrismsResponse(reqAuth, ret, true);
+		}
+
 		private PrismsResponse processWMS(RequestAuthenticator reqAuth, PrismsRequest req, JSONObject event,
 			PrismsWmsRequest wms) throws IOException
 		{
@@ -1292,14 +1399,14 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				switch(wms.getRequest())
 				{
 				case GetCapabilities:
-					response.setContentType("text/xml");
-					writer = new java.io.PrintWriter(response.getOutputStream());
+					response.setContentType("text/xml; charset=UTF-8");
+					writer = theCompression.getWriter(req.httpRequest, response);
 					writer.write(plugin.getCapabilities(wms, event));
 					writer.close();
 					break;
 				case GetList:
-					response.setContentType("text/xml");
-					writer = new java.io.PrintWriter(response.getOutputStream());
+					response.setContentType("text/xml; charset=UTF-8");
+					writer = theCompression.getWriter(req.httpRequest, response);
 					writer.write(plugin.getList(wms, event));
 					writer.close();
 					break;
@@ -1325,15 +1432,15 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 					out.close();
 					break;
 				case GetFeatureInfo:
-					response.setContentType("text/html");
-					writer = new java.io.PrintWriter(response.getOutputStream());
+					response.setContentType("text/html; charset=UTF-8");
+					writer = theCompression.getWriter(req.httpRequest, response);
 					String featureInfo = plugin.getFeatureInfo(wms, event);
 					writer.write(featureInfo);
 					writer.close();
 					break;
 				case Other:
-					response.setContentType("text/html");
-					writer = new java.io.PrintWriter(response.getOutputStream());
+					response.setContentType("text/html; charset=UTF-8");
+					writer = theCompression.getWriter(req.httpRequest, response);
 					writer.write(plugin.respond(wms, event));
 					writer.close();
 					break;
@@ -1536,6 +1643,8 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 	{
 		private final String theID;
 
+		private String [] theKeys;
+
 		private SecuritySession [] theSecurities;
 
 		private PrismsSessionHolder [] theSessionHolders;
@@ -1558,6 +1667,17 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			return theGovernor;
 		}
 
+		/** @return The keys that this session is stored under in the server's session map */
+		String [] getKeys()
+		{
+			return theKeys;
+		}
+
+		void setKeys(String [] keys)
+		{
+			theKeys = keys;
+		}
+
 		SecuritySession getSecurity(PrismsAuthenticator auth, User user)
 		{
 			theLastUsed = System.currentTimeMillis();
@@ -1620,7 +1740,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 									+ session.getClient().getName() + " has timed out.");
 							String key = theID + "/" + session.getClient().getApp().getName() + "/"
 								+ session.getClient().getName() + "/" + session.getUser().getName();
-							theEpitaphs.put(key, new SessionEpitaph("Session has timed out."));
+							addEpitaph(key, "Session has timed out.");
 						}
 						session = null;
 					}
@@ -1692,8 +1812,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 										+ " ") + ", user " + holder.getUser() + ", application "
 									+ holder.getClient().getApp() + ", client " + holder.getClient()
 									+ " has been killed by an administrator.");
-								theEpitaphs
-									.put(key, new SessionEpitaph("Session has been killed by an administrator."));
+								addEpitaph(key, "Session has been killed by an administrator.");
 							}
 							else
 							{
@@ -1702,7 +1821,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 										+ "") + ", user " + holder.getUser() + ", application "
 									+ holder.getClient().getApp() + ", client " + holder.getClient().getName()
 									+ " has timed out.");
-								theEpitaphs.put(key, new SessionEpitaph("Session has timed out."));
+								addEpitaph(key, "Session has timed out.");
 							}
 							theSessionHolders = ArrayUtils.remove(theSessionHolders, s);
 							holder.destroy();
@@ -1732,6 +1851,33 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				&& System.currentTimeMillis() - theLastUsed > getSecurityTimeout() * 2;
 		}
 
+		/** @return The amount of time until any of this session's contents may expire */
+		long untilCheck()
+		{
+			long ret = Long.MAX_VALUE;
+			SecuritySession [] securities = theSecurities;
+			PrismsSessionHolder [] holders = theSessionHolders;
+			for(SecuritySession sec : securities)
+			{
+				long exp = sec.untilExpires();
+				if(exp < ret)
+					ret = exp;
+			}
+			for(PrismsSessionHolder holder : holders)
+			{
+				long exp = holder.isKilled() ? 0 : holder.untilExpires();
+				if(exp < ret)
+					ret = exp;
+			}
+			if(securities.length == 0 && holders.length == 0)
+			{
+				long exp = getSecurityTimeout() * 2 - System.currentTimeMillis() + theLastUsed;
+				if(exp < ret)
+					ret = exp;
+			}
+			return ret;
+		}
+
 		void destroy()
 		{
 			SecuritySession [] securities = theSecurities;
@@ -1800,48 +1946,335 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 	private static class SessionEpitaph
 	{
+		final String key;
+
 		final String message;
 
 		final long time;
 
-		SessionEpitaph(String msg)
+		SessionEpitaph(String k, String msg)
 		{
+			key = k;
 			message = msg;
 			time = System.currentTimeMillis();
 		}
 	}
 
-	/** A client activity counter to compare client activity to a particular activity constraint */
-	public static class ClientActivityCounter
+	/**
+	 * Expires sessions in the background. HTTP sessions are kept in a queue ordered by the time at which their contents
+	 * may next expire, so each sweep only touches those sessions that may actually have expired rather than every
+	 * session on the server. Since a session's expiration is pushed back each time it is used, a session that comes
+	 * due but is found to be still alive is simply re-queued at its new expiration time.
+	 */
+	private class SessionSweeper implements Runnable
 	{
-		volatile long startTime;
+		/**
+		 * The maximum amount of time a session goes unchecked. Sessions can be killed by an administrator at any time,
+		 * so this bounds the time before a killed session is cleaned up.
+		 */
+		static final long MAX_CHECK_INTERVAL = 30000;
 
-		int hitCount;
+		/** The minimum amount of time between checks of a single session */
+		static final long MIN_CHECK_INTERVAL = 250;
 
-		long unlockTime;
+		/** The amount of time after which an idle remote host's activity is no longer tracked */
+		static final long GOVERNOR_TIMEOUT = 15L * 60 * 1000;
 
-		ClientActivityCounter()
+		private final class SweepEntry implements Comparable<SweepEntry>
 		{
+			final HttpSession session;
+
+			final long due;
+
+			SweepEntry(HttpSession aSession, long aDue)
+			{
+				session = aSession;
+				due = aDue;
+			}
+
+			public int compareTo(SweepEntry o)
+			{
+				return due < o.due ? -1 : (due > o.due ? 1 : 0);
+			}
 		}
 
-		/** @return The time when this activity counter was started or restarted */
-		public long getStartTime()
+		private final java.util.PriorityQueue<SweepEntry> theQueue;
+
+		private final java.util.concurrent.ConcurrentLinkedQueue<SessionEpitaph> theEpitaphQueue;
+
+		private Thread theThread;
+
+		private volatile boolean isClosed;
+
+		private long theLastGovernorPurge;
+
+		SessionSweeper()
+		{
+			theQueue = new java.util.PriorityQueue<SweepEntry>();
+			theEpitaphQueue = new java.util.concurrent.ConcurrentLinkedQueue<SessionEpitaph>();
+		}
+
+		/** @param session The new session to expire when its contents expire */
+		synchronized void add(HttpSession session)
 		{
-			return startTime;
+			theQueue.add(new SweepEntry(session, System.currentTimeMillis() + MAX_CHECK_INTERVAL));
+			start();
+			notifyAll();
+		}
+
+		/** Starts this sweeper's thread if it is not already running */
+		synchronized void start()
+		{
+			if(theThread == null && !isClosed)
+			{
+				theThread = new Thread(this, "PRISMS Session Sweeper");
+				theThread.setDaemon(true);
+				theThread.setPriority(Thread.MIN_PRIORITY);
+				theThread.start();
+			}
+		}
+
+		/** Wakes this sweeper's thread so that it sweeps immediately */
+		synchronized void wake()
+		{
+			start();
+			notifyAll();
+		}
+
+		/** @param epitaph The epitaph to remove after the expiration warning threshold */
+		void add(SessionEpitaph epitaph)
+		{
+			theEpitaphQueue.add(epitaph);
+		}
+
+		public void run()
+		{
+			while(!isClosed)
+			{
+				try
+				{
+					long wait = sweep();
+					synchronized(this)
+					{
+						if(!isClosed && wait > 0)
+							wait(wait);
+					}
+				} catch(InterruptedException e)
+				{} catch(Throwable e)
+				{
+					log.error("Could not sweep sessions", e);
+				}
+			}
 		}
 
 		/**
-		 * @return The number of hits that this client has had since this counter was started or restarted
+		 * Expires all sessions and epitaphs that are due. Only the sweeper's thread calls this.
+		 * 
+		 * @return The amount of time until the next sweep is needed
 		 */
+		long sweep()
+		{
+			long now = System.currentTimeMillis();
+			while(true)
+			{
+				SweepEntry entry;
+				synchronized(this)
+				{
+					entry = theQueue.peek();
+					if(entry == null || entry.due > now)
+						break;
+					theQueue.poll();
+				}
+				if(entry.session.check())
+				{
+					String [] keys = entry.session.getKeys();
+					if(keys != null)
+						for(String key : keys)
+							theSessions.remove(key, entry.session);
+					continue;
+				}
+				long next = entry.session.untilCheck();
+				if(next > MAX_CHECK_INTERVAL)
+					next = MAX_CHECK_INTERVAL;
+				else if(next < MIN_CHECK_INTERVAL)
+					next = MIN_CHECK_INTERVAL;
+				synchronized(this)
+				{
+					if(!isClosed)
+						theQueue.add(new SweepEntry(entry.session, now + next));
+				}
+			}
+
+			if(now - theLastGovernorPurge >= GOVERNOR_TIMEOUT / 15)
+			{
+				theLastGovernorPurge = now;
+				java.util.Iterator<ClientGovernor> govIter = theClientGovernors.values().iterator();
+				while(govIter.hasNext())
+				{
+					ClientGovernor gov = govIter.next();
+					if(now - gov.getLastHit() > GOVERNOR_TIMEOUT && gov.isLocked() < 0)
+						govIter.remove();
+				}
+			}
+
+			long ret = MAX_CHECK_INTERVAL;
+			SessionEpitaph ep = theEpitaphQueue.peek();
+			while(ep != null && now - ep.time > WARN_EXPIRE_THRESHOLD)
+			{
+				theEpitaphQueue.poll();
+				theEpitaphs.remove(ep.key, ep);
+				ep = theEpitaphQueue.peek();
+			}
+			if(ep != null && ep.time + WARN_EXPIRE_THRESHOLD - now < ret)
+				ret = ep.time + WARN_EXPIRE_THRESHOLD - now;
+			synchronized(this)
+			{
+				SweepEntry entry = theQueue.peek();
+				if(entry != null && entry.due - now < ret)
+					ret = entry.due - now;
+			}
+			return ret;
+		}
+
+		synchronized void close()
+		{
+			isClosed = true;
+			theQueue.clear();
+			theEpitaphQueue.clear();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Keeps track of a client's activity against a single {@link ActivityConstraint}. Activity is metered with a token
+	 * bucket (in the form of a theoretical arrival time) held in atomic fields, so concurrent hits from the same host
+	 * neither block each other nor lose counts.
+	 */
+	public static class ClientActivityCounter
+	{
+		private final ActivityConstraint theConstraint;
+
+		/** The amount of time each hit consumes from the bucket, in microseconds */
+		private final long theInterval;
+
+		/** The amount of time the theoretical arrival time may run ahead of the current time, in microseconds */
+		private final long theTolerance;
+
+		/** The time at which the bucket will be completely refilled, in microseconds */
+		private final java.util.concurrent.atomic.AtomicLong theArrival;
+
+		private final java.util.concurrent.atomic.AtomicLong theUnlockTime;
+
+		private final java.util.concurrent.atomic.AtomicLong theTotalHits;
+
+		private volatile long theStartTime;
+
+		ClientActivityCounter(ActivityConstraint constraint)
+		{
+			theConstraint = constraint;
+			theInterval = constraint.constraintTime * 1000000L / (constraint.maxHits > 0 ? constraint.maxHits : 1);
+			/* The constraint's hit is counted when it is reached, so one fewer hit than the maximum may be made
+			 * within the constraint time */
+			theTolerance = constraint.maxHits > 2 ? (constraint.maxHits - 2) * theInterval : 0;
+			theArrival = new java.util.concurrent.atomic.AtomicLong();
+			theUnlockTime = new java.util.concurrent.atomic.AtomicLong(-1);
+			theTotalHits = new java.util.concurrent.atomic.AtomicLong();
+		}
+
+		/** @return The constraint that this counter enforces */
+		public ActivityConstraint getConstraint()
+		{
+			return theConstraint;
+		}
+
+		/** @return The time when the client's current burst of activity started */
+		public long getStartTime()
+		{
+			return theStartTime;
+		}
+
+		/** @return The number of recent hits from this client still counted against the constraint */
 		public int getHitCount()
 		{
-			return hitCount;
+			long remaining = theArrival.get() - System.currentTimeMillis() * 1000;
+			if(remaining <= 0)
+				return 0;
+			return (int) ((remaining + theInterval - 1) / theInterval);
+		}
+
+		/** @return The total number of hits that this counter has recorded */
+		public long getTotalHits()
+		{
+			return theTotalHits.get();
 		}
 
 		/** @return The time at which this counter will unlock, or -1 if it is not locked */
 		public long getUnlockTime()
 		{
-			return unlockTime;
+			return theUnlockTime.get();
+		}
+
+		/**
+		 * @return How close this counter is to exceeding its constraint. 0 means there have been no hits within the
+		 *         constraint time; 1 means the constraint has just or is about to lock the client out.
+		 */
+		public float getCloseness()
+		{
+			long remaining = theArrival.get() - System.currentTimeMillis() * 1000;
+			if(remaining <= 0)
+				return 0;
+			float ret = remaining * 1.0f / (theTolerance + theInterval);
+			return ret > 1 ? 1 : ret;
+		}
+
+		long hit(long now, String host)
+		{
+			theTotalHits.incrementAndGet();
+			long unlock = theUnlockTime.get();
+			if(unlock >= 0)
+			{
+				if(now <= unlock)
+					return unlock;
+				theUnlockTime.compareAndSet(unlock, -1);
+			}
+			long nowMicros = now * 1000;
+			while(true)
+			{
+				long arrival = theArrival.get();
+				long start = arrival < nowMicros ? nowMicros : arrival;
+				if(start - nowMicros > theTolerance)
+				{
+					/* Decide how long to lock the client out. If the client ran through all its hits in a very
+					 * short time, make the lock time longer. If the client's activity was only just over the
+					 * constraint, don't penalize the client for very long. */
+					long oStart = theStartTime;
+					float weight = now > oStart ? theConstraint.constraintTime * 1000f / (now - oStart) - 1 : 2;
+					if(weight > 2)
+						weight = 2;
+					else if(weight < 0.1f)
+						weight = 0.1f;
+					long newUnlock = now + (long) (weight * theConstraint.lockTime * 1000);
+					if(!theUnlockTime.compareAndSet(-1, newUnlock))
+						return theUnlockTime.get();
+					theArrival.set(nowMicros);
+					if(host != null)
+					{
+						StringBuilder sb = new StringBuilder("Remote host ").append(host);
+						sb.append(" locked out for ").append(theConstraint.maxHits).append(" hits in ");
+						QommonsUtils.printTimeLength(now - oStart, sb, false);
+						sb.append(": Unlock set to ");
+						sb.append(QommonsUtils.TimePrecision.SECONDS.print(newUnlock, true));
+						log.error(sb.toString());
+					}
+					return newUnlock;
+				}
+				if(theArrival.compareAndSet(arrival, start + theInterval))
+				{
+					if(arrival <= nowMicros)
+						theStartTime = now;
+					return -1;
+				}
+			}
 		}
 	}
 
@@ -1850,61 +2283,35 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 	{
 		private final ClientActivityCounter [] theActivities;
 
+		private final java.util.concurrent.atomic.AtomicLong theTotalHits;
+
+		private final long theCreationTime;
+
+		private volatile long theLastHit;
+
 		ClientGovernor()
 		{
 			theActivities = new ClientActivityCounter [theActivityConstraints.length];
 			for(int c = 0; c < theActivities.length; c++)
-				theActivities[c] = new ClientActivityCounter();
+				if(theActivityConstraints[c] != null)
+					theActivities[c] = new ClientActivityCounter(theActivityConstraints[c]);
+			theTotalHits = new java.util.concurrent.atomic.AtomicLong();
+			theCreationTime = System.currentTimeMillis();
+			theLastHit = theCreationTime;
 		}
 
 		long hit(String host)
 		{
 			long now = System.currentTimeMillis();
+			theLastHit = now;
+			theTotalHits.incrementAndGet();
 			for(int c = 0; c < theActivities.length; c++)
 			{
-				ActivityConstraint constraint = theActivityConstraints[c];
-				ClientActivityCounter activity = theActivities[c];
-				long oStart = activity.startTime;
-				if(activity.unlockTime >= 0)
-				{
-					if(now > activity.unlockTime)
-						activity.unlockTime = -1;
-					else
-						return activity.unlockTime;
-				}
-				if(now - oStart >= constraint.constraintTime * 1000)
-				{
-					activity.startTime = now;
-					activity.hitCount = 1;
-				}
-				else
-				{
-					int newHits = activity.hitCount + 1;
-					if(newHits >= constraint.maxHits)
-					{
-						/* Decide how long to lock the client out. If the client ran through all its
-						 * hits in a very short time, make the lock time longer. If the last hit was
-						 * *just* shy of the reset time, don't penalize the client for very long. */
-						float weight = constraint.constraintTime * 1000f / (now - oStart) - 1;
-						if(weight > 2)
-							weight = 2;
-						activity.unlockTime = now + (long) (weight * constraint.lockTime * 1000);
-
-						if(host != null)
-						{
-							StringBuilder sb = new StringBuilder("Remote host ").append(host);
-							sb.append(" locked out for ").append(newHits).append(" hits in ");
-							QommonsUtils.printTimeLength(now - oStart, sb, false);
-							sb.append(": Unlock set to ");
-							sb.append(QommonsUtils.TimePrecision.SECONDS.print(activity.unlockTime, true));
-							log.error(sb.toString());
-						}
-						activity.hitCount = 0;
-						return activity.unlockTime;
-					}
-					else if(activity.startTime == oStart)
-						activity.hitCount = newHits;
-				}
+				if(theActivities[c] == null)
+					continue;
+				long unlock = theActivities[c].hit(now, host);
+				if(unlock >= 0)
+					return unlock;
 			}
 			return -1;
 		}
@@ -1917,17 +2324,38 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		{
 			long now = System.currentTimeMillis();
 			for(int c = 0; c < theActivities.length; c++)
-				if(theActivities[c].unlockTime >= now)
-					return theActivities[c].unlockTime;
+				if(theActivities[c] != null && theActivities[c].getUnlockTime() >= now)
+					return theActivities[c].getUnlockTime();
 			return -1;
 		}
 
+		/** @return The total number of hits this governor has recorded from its client */
+		public long getTotalHits()
+		{
+			return theTotalHits.get();
+		}
+
+		/** @return The last time this governor's client hit the server */
+		public long getLastHit()
+		{
+			return theLastHit;
+		}
+
+		/** @return The average rate at which this governor's client has hit the server, in hits per second */
+		public float getHitRate()
+		{
+			long time = System.currentTimeMillis() - theCreationTime;
+			if(time < 1000)
+				time = 1000;
+			return theTotalHits.get() * 1000f / time;
+		}
+
 		/**
 		 * Gets the activity counter for this client governor corresponding to an activity constraint set in the server.
 		 * The counters in this governor are indexed identically to the constraints in the server.
 		 * 
 		 * @param index The index of the activity counter to get
-		 * @return The activity counter at the given index
+		 * @return The activity counter at the given index, or null if the constraint at the given index is invalid
 		 */
 		public ClientActivityCounter getCounter(int index)
 		{
@@ -1965,19 +2393,9 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		 */
 		public float getCloseness(int index)
 		{
-			ActivityConstraint constraint = theActivityConstraints[index];
-			ClientActivityCounter activity = theActivities[index];
-			long now = System.currentTimeMillis();
-			long timeDist = now - activity.startTime;
-			if(timeDist >= constraint.constraintTime * 1000)
+			if(theActivities[index] == null)
 				return 0;
-			if(timeDist < constraint.constraintTime * 1000 / 2)
-				timeDist = constraint.constraintTime * 1000 / 2;
-			float dist = activity.hitCount * 1.0f / timeDist
-				/ (constraint.maxHits * 1.0f / (constraint.constraintTime * 1000));
-			if(dist > 1)
-				dist = 1;
-			return dist;
+			return theActivities[index].getCloseness();
 		}
 	}
 
@@ -1993,18 +2411,22 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 	final java.util.concurrent.ConcurrentHashMap<String, SessionEpitaph> theEpitaphs;
 
-	final org.qommons.DemandCache<String, ClientGovernor> theClientGovernors;
+	private final SessionSweeper theSweeper;
 
-	private RemoteEventSerializer theSerializer;
+	final java.util.concurrent.ConcurrentHashMap<String, ClientGovernor> theClientGovernors;
 
-	private long theCleanTimer;
+	private RemoteEventSerializer theSerializer;
 
-	private long theCleanInterval;
+	private final ResponseCompression theCompression;
 
 	private long theSecurityTimeout;
 
 	private long theSecurityRefresh;
 
+	long thePushMaxHold;
+
+	long thePushBatchWindow;
+
 	ActivityConstraint [] theActivityConstraints;
 
 	private ConfigProgress theConfigProgress;
@@ -2039,27 +2461,10 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		log.info("Loaded PRISMS");
 		theSessions = new java.util.concurrent.ConcurrentHashMap<String, HttpSession>(32);
 		theEpitaphs = new java.util.concurrent.ConcurrentHashMap<String, SessionEpitaph>();
-		theClientGovernors = new org.qommons.DemandCache<String, ClientGovernor>(
-			new org.qommons.DemandCache.Qualitizer<String, ClientGovernor>()
-			{
-				@Override
-				public float quality(String key, ClientGovernor value)
-				{
-					if(value.isLocked() >= 0)
-						return 1000;
-					else
-						return 1;
-				}
-
-				@Override
-				public float size(String key, ClientGovernor value)
-				{
-					return 1;
-				}
-			}, 0, 15L * 60 * 1000);
+		theSweeper = new SessionSweeper();
+		theClientGovernors = new java.util.concurrent.ConcurrentHashMap<String, ClientGovernor>();
 		theSerializer = new JsonSerializer();
-		theCleanTimer = System.currentTimeMillis();
-		theCleanInterval = 1000;
+		theCompression = new ResponseCompression();
 		if(initDefaultLogging)
 			initLog4j(getClass().getResource("log4j.xml"));
 		theApps = new java.util.LinkedHashMap<String, PrismsApplication>();
@@ -2067,6 +2472,8 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		theConfigs = new java.util.HashMap<String, AppConfigurator>();
 		theConfigProgress = new ConfigProgress();
 		isCheckingForRunaways = true;
+		thePushMaxHold = 25000;
+		thePushBatchWindow = 50;
 
 		PrismsConfig configXML = getPrismsConfig();
 		if(configXML.subConfig("load-immediately") != null)
@@ -2125,6 +2532,12 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		return theSerializer;
 	}
 
+	/** @return The compression that this server applies to its responses */
+	public ResponseCompression getCompression()
+	{
+		return theCompression;
+	}
+
 	/**
 	 * @return The amount of time (in milliseconds) that this server keeps unused security sessions around before it
 	 *         purges them.
@@ -2143,6 +2556,61 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		return theSecurityRefresh;
 	}
 
+	/**
+	 * @return The maximum amount of time (in milliseconds) that a waitEvents request will be held open waiting for
+	 *         events to be posted to its session
+	 */
+	public long getPushMaxHold()
+	{
+		return thePushMaxHold;
+	}
+
+	/**
+	 * @return The amount of time (in milliseconds) that a waitEvents request will wait after the first event is posted
+	 *         for more events so that they may be returned together
+	 */
+	public long getPushBatchWindow()
+	{
+		return thePushBatchWindow;
+	}
+
+	/**
+	 * Gets or creates the governor for a remote host
+	 * 
+	 * @param host The remote host to get the governor for
+	 * @return The governor keeping track of the given host's activity
+	 */
+	ClientGovernor getGovernor(String host)
+	{
+		ClientGovernor ret = theClientGovernors.get(host);
+		if(ret == null)
+		{
+			ClientGovernor newGov = new ClientGovernor();
+			ret = theClientGovernors.putIfAbsent(host, newGov);
+			if(ret == null)
+			{
+				ret = newGov;
+				theSweeper.start(); // Purges idle governors
+			}
+		}
+		return ret;
+	}
+
+	/** @return All remote hosts whose activity is currently being tracked by this server */
+	public String [] getGovernedHosts()
+	{
+		return theClientGovernors.keySet().toArray(new String [0]);
+	}
+
+	/**
+	 * @param host The remote host to get activity information for
+	 * @return The governor tracking the given host's activity, or null if the host's activity is not being tracked
+	 */
+	public ClientGovernor getClientGovernor(String host)
+	{
+		return theClientGovernors.get(host);
+	}
+
 	/** @return The activity constraints that prevent overuse of this server */
 	public ActivityConstraint [] getActivityConstraints()
 	{
@@ -2213,6 +2681,11 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			prismsUsersLog.setLevel(org.apache.log4j.Level.INFO);
 		PrismsConfig pConfig = getPrismsConfig();
 		isCheckingForRunaways = pConfig.is("checkForRunaways", true);
+		/* Parse the push settings--how long waitEvents requests may be held open and how long to wait
+		 * to batch events together once one is posted */
+		thePushMaxHold = pConfig.getTime("push/max-hold", thePushMaxHold);
+		thePushBatchWindow = pConfig.getTime("push/batch-window", thePushBatchWindow);
+		theCompression.configure(pConfig.subConfig("compression"));
 		String configXmlRef = getClass().getResource("PRISMSConfig.xml").toString();
 
 		if(theConfigProgress.theStage.compareTo(ConfigStage.NEW) <= 0)
@@ -2475,11 +2948,57 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				else
 					worker = new prisms.impl.ThreadPoolWorker("PRISMS Worker", workerEl.getInt("threads", 0));
 			}
+			else if("executor".equals(workerEl.get("type")))
+			{
+				String policyStr = workerEl.get("rejection");
+				prisms.impl.ExecutorWorker.RejectionPolicy policy;
+				if(policyStr == null)
+					policy = prisms.impl.ExecutorWorker.RejectionPolicy.callerRuns;
+				else
+				{
+					try
+					{
+						policy = prisms.impl.ExecutorWorker.RejectionPolicy.valueOf(policyStr);
+					} catch(IllegalArgumentException e)
+					{
+						log.error("Unrecognized rejection policy for executor worker: " + policyStr);
+						policy = prisms.impl.ExecutorWorker.RejectionPolicy.callerRuns;
+					}
+				}
+				worker = new prisms.impl.ExecutorWorker("PRISMS Worker", workerEl.getInt("threads",
+					Runtime.getRuntime().availableProcessors() * 2), workerEl.getInt("queue-size", 1000),
+					policy);
+			}
+			else if("virtual".equals(workerEl.get("type")))
+				worker = prisms.impl.ExecutorWorker.createVirtual("PRISMS Worker");
 			else
 				throw new IllegalArgumentException("Unrecognized worker type in worker element " + workerEl
 					+ "\nCannot configure application without worker");
 			theEnv.setWorker(worker);
 
+			PrismsConfig sessionTaskEl = pConfig.subConfig("session-tasks");
+			if(sessionTaskEl != null && sessionTaskEl.is("parallel", false))
+				theEnv.setSessionTaskWorker(new prisms.impl.ExecutorWorker("PRISMS Session Tasks",
+					sessionTaskEl.getInt("threads", Runtime.getRuntime().availableProcessors()),
+					sessionTaskEl.getInt("queue-size", 1000),
+					prisms.impl.ExecutorWorker.RejectionPolicy.abort));
+
+			PrismsConfig virtualEl = pConfig.subConfig("virtual-threads");
+			if(virtualEl != null && virtualEl.is("enabled", false))
+			{
+				if(virtualEl.is("trace-pinning", false))
+					prisms.impl.ExecutorWorker.traceJvmPinning();
+				prisms.impl.ExecutorWorker asyncWorker = prisms.impl.ExecutorWorker
+					.createVirtual("PRISMS Async Worker");
+				if(asyncWorker.isVirtual())
+				{
+					asyncWorker.setBlockedThreshold(virtualEl.getTime("blocked-threshold", 0));
+					theEnv.setAsyncWorker(asyncWorker);
+				}
+				else
+					asyncWorker.close();
+			}
+
 			PrismsConfig tracking = pConfig.subConfig("tracking");
 			if(tracking != null)
 				theEnv.setTrackConfigs(AppConfig.parseTrackConfigs(tracking));
@@ -2911,6 +3430,13 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 					}
 				else
 					client.setSerializer(new JsonSerializer());
+				PrismsConfig coalesceEl = clientEl.subConfig("coalesce");
+				if(coalesceEl != null)
+				{
+					String [] methods = coalesceEl.getAll("method");
+					if(methods.length > 0)
+						client.setCoalescingPolicy(new CoalescingPolicy.ByMethod(methods));
+				}
 				String sessionTimeout = clientEl.get("session-timeout");
 				if(sessionTimeout == null)
 				{
@@ -3160,27 +3686,20 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		String rh = req.getRemoteHost();
 		if(rh == null)
 			rh = "null";
-		ClientGovernor clientGovernor = theClientGovernors.get(rh);
-		if(clientGovernor == null && theConfigProgress.theStage == ConfigStage.CONFIGURED)
-		{ /* Not synchronized properly on purpose--consequences are minimal and performance is premium */
-			clientGovernor = new ClientGovernor();
-			theClientGovernors.put(rh, clientGovernor);
-		}
+		ClientGovernor clientGovernor = null;
+		if(theConfigProgress.theStage == ConfigStage.CONFIGURED)
+			clientGovernor = getGovernor(rh);
 		long unlockTime = clientGovernor != null ? clientGovernor.hit(rh) : -1;
 		if(unlockTime >= 0)
 		{
 			events.add(error(ErrorCode.RequestInvalid, "Client activity constraint exceeded." + " Host " + rh
 				+ " may not access this server until " + QommonsUtils.TimePrecision.SECONDS.print(unlockTime, true)
 				+ " server time"));
-			resp.setContentType("text/prisms-json");
-			java.io.PrintWriter out = resp.getWriter();
-			out.print(theSerializer.serialize(events));
-			out.close();
+			PrismsRequest.send(req, resp, theSerializer, theCompression, events);
 			return;
 		}
 
-		clean();
-		PrismsRequest pReq = new PrismsRequest(req, resp, getSerializer());
+		PrismsRequest pReq = new PrismsRequest(req, resp, getSerializer(), theCompression);
 		if(pReq.isWMS)
 		{
 			temp = pReq.adjustWMS();
@@ -3215,10 +3734,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		}
 
 		if(clientGovernor == null)
-		{
-			clientGovernor = new ClientGovernor();
-			theClientGovernors.put(rh, clientGovernor);
-		}
+			clientGovernor = getGovernor(rh);
 
 		if(theEnv != null)
 		{
@@ -3288,8 +3804,10 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 					if(httpSession == null)
 					{
 						httpSession = new HttpSession(sessionIDs[0], clientGovernor);
+						httpSession.setKeys(sessionIDs);
 						for(String sessionID : sessionIDs)
 							theSessions.put(sessionID, httpSession);
+						theSweeper.add(httpSession);
 					}
 				}
 			}
@@ -3392,7 +3910,6 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			else
 				pResp.toReturn.addAll(preRet);
 		}
-		clean();
 		if(pResp.toReturn != null)
 		{
 			events.addAll(pResp.toReturn);
@@ -3518,29 +4035,20 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		theSessions.remove(id);
 	}
 
-	/** Disposes of application sessions that are expired */
+	void addEpitaph(String key, String message)
+	{
+		SessionEpitaph epitaph = new SessionEpitaph(key, message);
+		theEpitaphs.put(key, epitaph);
+		theSweeper.add(epitaph);
+	}
+
+	/**
+	 * Disposes of application sessions that are expired. Sessions are expired automatically in the background, so this
+	 * method need not be called except to prompt the background sweep to run immediately.
+	 */
 	public void clean()
 	{
-		long time = System.currentTimeMillis();
-		if(time - theCleanTimer < theCleanInterval)
-			return;
-		theCleanTimer = Long.MAX_VALUE;
-		java.util.Iterator<HttpSession> sessionIter = theSessions.values().iterator();
-		while(sessionIter.hasNext())
-		{
-			HttpSession session = sessionIter.next();
-			if(session != null && session.check())
-				sessionIter.remove();
-		}
-		java.util.Iterator<SessionEpitaph> epitaphs = theEpitaphs.values().iterator();
-		while(epitaphs.hasNext())
-		{
-			SessionEpitaph ep = epitaphs.next();
-			if(time - ep.time > WARN_EXPIRE_THRESHOLD)
-				epitaphs.remove();
-		}
-		theCleanTimer = time;
-		System.gc();
+		theSweeper.wake();
 	}
 
 	private long runawayCheckFreq;
@@ -3817,6 +4325,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 	public void destroy()
 	{
 		log.info("PRISMS is shutting down");
+		theSweeper.close();
 		HttpSession [] sessions = theSessions.values().toArray(new HttpSession [0]);
 		theSessions.clear();
 		for(HttpSession session : sessions)
@@ -3828,6 +4337,10 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		getEnv().getIDs().destroy();
 		getEnv().getConnectionFactory().destroy();
 		getEnv().getWorker().close();
-		System.gc();
+		if(getEnv().getAsyncWorker() != null)
+			getEnv().getAsyncWorker().close();
+		if(getEnv().getSessionTaskWorker() != null)
+			getEnv().getSessionTaskWorker().close();
+		theCompression.close();
 	}
 }
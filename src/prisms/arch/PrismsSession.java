@@ -116,6 +116,86 @@ public class PrismsSession
 		}
 	}
 
+	/**
+	 * A handle on an event being processed asynchronously by
+	 * {@link PrismsSession#processAsync(JSONObject)}
+	 */
+	public static class AsyncTask
+	{
+		private static final java.util.concurrent.atomic.AtomicLong theIDs = new java.util.concurrent.atomic.AtomicLong();
+
+		private final String theID;
+
+		private final JSONObject theEvent;
+
+		private final long theStartTime;
+
+		private final java.util.concurrent.CountDownLatch theLatch;
+
+		private volatile long theEndTime;
+
+		AsyncTask(JSONObject event)
+		{
+			theID = Long.toHexString(theIDs.incrementAndGet());
+			theEvent = event;
+			theStartTime = System.currentTimeMillis();
+			theLatch = new java.util.concurrent.CountDownLatch(1);
+		}
+
+		/** @return The ID by which the client refers to this task */
+		public String getID()
+		{
+			return theID;
+		}
+
+		/** @return The event being processed */
+		public JSONObject getEvent()
+		{
+			return theEvent;
+		}
+
+		/** @return The time at which this task was submitted */
+		public long getStartTime()
+		{
+			return theStartTime;
+		}
+
+		/** @return The time at which this task finished, or 0 if it is still running */
+		public long getEndTime()
+		{
+			return theEndTime;
+		}
+
+		/** @return Whether this task has finished processing its event */
+		public boolean isFinished()
+		{
+			return theLatch.getCount() == 0;
+		}
+
+		/**
+		 * Waits for this task to finish
+		 * 
+		 * @param timeout The maximum amount of time to wait, in milliseconds
+		 * @return Whether the task finished within the given time
+		 */
+		public boolean await(long timeout)
+		{
+			try
+			{
+				return theLatch.await(timeout, java.util.concurrent.TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e)
+			{
+				return isFinished();
+			}
+		}
+
+		void finished()
+		{
+			theEndTime = System.currentTimeMillis();
+			theLatch.countDown();
+		}
+	}
+
 	static final Logger log = Logger.getLogger(PrismsSession.class);
 
 	private final PrismsApplication theApp;
@@ -136,11 +216,36 @@ public class PrismsSession
 
 	private prisms.ui.StatusPlugin theStatus;
 
-	private final java.util.concurrent.ConcurrentLinkedQueue<JSONObject> theOutgoingQueue;
+	/** An event waiting to be sent to the client */
+	private static class OutgoingEvent
+	{
+		final JSONObject theEvent;
+
+		final String theKey;
+
+		volatile boolean isSuperseded;
+
+		OutgoingEvent(JSONObject evt, String key)
+		{
+			theEvent = evt;
+			theKey = key;
+		}
+	}
+
+	private final java.util.concurrent.ConcurrentLinkedQueue<OutgoingEvent> theOutgoingQueue;
+
+	/** The latest queued event for each coalescing key */
+	private final java.util.concurrent.ConcurrentHashMap<String, OutgoingEvent> theCoalescedEvents;
+
+	private final Object theOutgoingLock;
+
+	private volatile int theEventWaiters;
 
 	private long theLastCheckedTime;
 
-	private boolean isKilled;
+	private volatile boolean isKilled;
+
+	private volatile boolean isDestroyed;
 
 	private final java.util.LinkedHashMap<String, AppPlugin> thePlugins;
 
@@ -159,11 +264,37 @@ public class PrismsSession
 
 	private final ListenerManager<PrismsEventListener> theELs;
 
+	/** Listeners that are notified asynchronously without implementing {@link AsyncPEL} */
+	private final java.util.Set<PrismsEventListener> theAsyncListeners;
+
+	/** Asynchronous event notifications waiting to be dispatched, in order */
+	private final java.util.concurrent.ConcurrentLinkedQueue<AsyncNotification> theAsyncEvents;
+
+	private final java.util.concurrent.atomic.AtomicInteger theAsyncEventDepth;
+
+	private final java.util.concurrent.atomic.AtomicBoolean isDispatchingAsync;
+
+	private volatile Thread theAsyncDispatchThread;
+
+	private volatile int theMaxAsyncEventDepth;
+
 	private final java.util.concurrent.ConcurrentLinkedQueue<Runnable> theTaskList;
 
+	/** Keeps queued tasks from being run by more than one thread at a time */
+	private final java.util.concurrent.locks.ReentrantLock theTaskRunLock;
+
+	/** Whether a background run of this session's tasks has been scheduled */
+	final java.util.concurrent.atomic.AtomicBoolean theTaskFlushScheduled;
+
+	/** This session's slot in its application's stale-property bitmaps, or -1 if none */
+	volatile int theAppSlot = -1;
+
+	/** The number of transactions currently active on this session */
+	private final java.util.concurrent.atomic.AtomicInteger theActiveTransactions;
+
 	private EventListener theListener;
 
-	private java.util.concurrent.ConcurrentHashMap<String, boolean []> theRunningTasks;
+	private java.util.concurrent.ConcurrentHashMap<String, AsyncTask> theRunningTasks;
 
 	private final org.qommons.TrackerSet theTrackSet;
 
@@ -185,7 +316,9 @@ public class PrismsSession
 		theUser = user;
 		theMetadata = md;
 		theCreationTime = System.currentTimeMillis();
-		theOutgoingQueue = new java.util.concurrent.ConcurrentLinkedQueue<JSONObject>();
+		theOutgoingQueue = new java.util.concurrent.ConcurrentLinkedQueue<OutgoingEvent>();
+		theCoalescedEvents = new java.util.concurrent.ConcurrentHashMap<String, OutgoingEvent>();
+		theOutgoingLock = new Object();
 		theLastCheckedTime = System.currentTimeMillis();
 		thePlugins = new java.util.LinkedHashMap<String, AppPlugin>();
 		theStandardPlugins = new java.util.LinkedHashMap<String, AppPlugin>();
@@ -195,8 +328,16 @@ public class PrismsSession
 		thePSAQueue = new PropertySetActionQueue();
 		thePCLs = new ListenerManager<PrismsPCL>(PrismsPCL.class);
 		theELs = new ListenerManager<PrismsEventListener>(PrismsEventListener.class);
+		theAsyncListeners = java.util.Collections
+			.newSetFromMap(new ConcurrentHashMap<PrismsEventListener, Boolean>());
+		theAsyncEvents = new java.util.concurrent.ConcurrentLinkedQueue<AsyncNotification>();
+		theAsyncEventDepth = new java.util.concurrent.atomic.AtomicInteger();
+		isDispatchingAsync = new java.util.concurrent.atomic.AtomicBoolean();
 		theTaskList = new java.util.concurrent.ConcurrentLinkedQueue<Runnable>();
-		theRunningTasks = new ConcurrentHashMap<String, boolean []>();
+		theTaskRunLock = new java.util.concurrent.locks.ReentrantLock();
+		theTaskFlushScheduled = new java.util.concurrent.atomic.AtomicBoolean();
+		theActiveTransactions = new java.util.concurrent.atomic.AtomicInteger();
+		theRunningTasks = new ConcurrentHashMap<String, AsyncTask>();
 		theTrackSet = new org.qommons.TrackerSet("Session: " + client + "/" + user, app
 			.getTrackSet().getConfigs());
 		theTrackSet.setConfigured();
@@ -351,12 +492,16 @@ public class PrismsSession
 	 */
 	public void removeOutgoingEvents(String pluginName)
 	{
-		java.util.Iterator<JSONObject> queueIter = theOutgoingQueue.iterator();
+		java.util.Iterator<OutgoingEvent> queueIter = theOutgoingQueue.iterator();
 		while(queueIter.hasNext())
 		{
-			JSONObject evt = queueIter.next();
-			if(pluginName.equals(evt.get("plugin")))
+			OutgoingEvent evt = queueIter.next();
+			if(pluginName.equals(evt.theEvent.get("plugin")))
+			{
 				queueIter.remove();
+				if(evt.theKey != null)
+					theCoalescedEvents.remove(evt.theKey, evt);
+			}
 		}
 	}
 
@@ -368,7 +513,7 @@ public class PrismsSession
 
 	/**
 	 * Processes an event synchronously. If this method is used instead of
-	 * {@link #processAsync(JSONObject, boolean [])}, events posted from this thread will go into
+	 * {@link #processAsync(JSONObject)}, events posted from this thread will go into
 	 * the return array instead of the outgoing list.
 	 * 
 	 * @param event The event to process
@@ -398,12 +543,40 @@ public class PrismsSession
 	 *        been processed
 	 * @return The events posted to this session that need to be sent to the client, whether or not
 	 *         they are a result of this particular call
+	 * @deprecated Use {@link #processAsync(JSONObject)} and {@link #getRunningTask(String)}, which
+	 *             do not require the caller to poll a flag
 	 */
-	public JSONArray processAsync(final JSONObject event, boolean [] finished)
+	@Deprecated
+	public JSONArray processAsync(JSONObject event, boolean [] finished)
 	{
 		if(finished == null)
-			finished = new boolean [1];
+			return processAsync(event);
 		final boolean [] fFinished = finished;
+		return _processAsync(event, new Runnable()
+		{
+			public void run()
+			{
+				fFinished[0] = true;
+			}
+		});
+	}
+
+	/**
+	 * Processes events from the remote client asynchronously. The calling thread waits for the
+	 * event to be processed for a short time so that quick events return their results
+	 * immediately, but is woken as soon as processing finishes.
+	 * 
+	 * @param event The event to process
+	 * @return The events posted to this session that need to be sent to the client, whether or not
+	 *         they are a result of this particular call
+	 */
+	public JSONArray processAsync(JSONObject event)
+	{
+		return _processAsync(event, null);
+	}
+
+	private JSONArray _processAsync(final JSONObject event, final Runnable onFinish)
+	{
 		PrismsTransaction trans = getTransaction();
 		if(event.get("plugin") == null && "getEvents".equals(event.get("method"))
 			&& event.containsKey("taskID"))
@@ -412,17 +585,10 @@ public class PrismsSession
 				"Check Running Tasks");
 			try
 			{
-				java.util.Iterator<boolean []> values = theRunningTasks.values().iterator();
-				while(values.hasNext())
-				{
-					if(values.next()[0])
-						values.remove();
-				}
-
 				String taskID = (String) event.get("taskID");
-				finished = theRunningTasks.get(taskID);
+				AsyncTask task = theRunningTasks.get(taskID);
 				JSONArray ret = getEvents();
-				if(finished != null && !finished[0] && !getUI().isProgressShowing())
+				if(task != null && !task.isFinished() && !getUI().isProgressShowing())
 				{
 					JSONObject getEvents = new JSONObject();
 					getEvents.put("method", "getEvents");
@@ -433,9 +599,11 @@ public class PrismsSession
 			} finally
 			{
 				prisms.util.PrismsUtils.end(trans, track);
-				fFinished[0] = true;
+				if(onFinish != null)
+					onFinish.run();
 			}
 		}
+		final AsyncTask task = new AsyncTask(event);
 		Runnable toRun = new Runnable()
 		{
 			public void run()
@@ -447,12 +615,25 @@ public class PrismsSession
 					process(event);
 				} finally
 				{
-					fFinished[0] = true;
+					task.finished();
+					// Finished tasks are dropped here, since push clients never poll for them again
+					theRunningTasks.remove(task.getID(), task);
+					if(onFinish != null)
+						onFinish.run();
 					getApp().getEnvironment().finish(trans2);
 				}
 			}
+
+			@Override
+			public String toString()
+			{
+				return "Async event " + task.getID() + ": " + event;
+			}
 		};
-		theApp.getEnvironment().getWorker().run(toRun, new Worker.ErrorListener()
+		Worker worker = theApp.getEnvironment().getAsyncWorker();
+		if(worker == null)
+			worker = theApp.getEnvironment().getWorker();
+		worker.run(toRun, new Worker.ErrorListener()
 		{
 			public void error(Error e)
 			{
@@ -462,54 +643,68 @@ public class PrismsSession
 			public void runtime(RuntimeException e)
 			{
 				postOutgoingEvent(wrapError("Background task runtime exception", e));
+				if(e instanceof java.util.concurrent.RejectedExecutionException
+					&& !task.isFinished())
+				{ // The worker discarded the task without running it
+					task.finished();
+					theRunningTasks.remove(task.getID(), task);
+					if(onFinish != null)
+						onFinish.run();
+				}
 			}
 		});
 		if(theAsyncWait > 0)
 		{
 			/*
-			 * This code checks often to see if the event has been processed. If the processing
-			 * isn't finished after theAsyncWait, this method returns, leaving the final results of
-			 * the event on the queue to be retrieved at the next client poll or user action. This
-			 * allows progress bars to be shown to the user quickly while a long operation
-			 * progresses, as well as releasing the server thread to be reused by other requests.
+			 * If the processing isn't finished after theAsyncWait, this method returns, leaving the
+			 * final results of the event on the queue to be retrieved at the next client poll or
+			 * user action. This allows progress bars to be shown to the user quickly while a long
+			 * operation progresses, as well as releasing the server thread to be reused by other
+			 * requests. If the processing finishes sooner, this thread is woken immediately.
 			 */
 			org.qommons.ProgramTracker.TrackNode track = prisms.util.PrismsUtils.track(trans,
 				"Wait For Async Results");
-			long waitInc = theAsyncWait / 5;
-			if(waitInc < 50)
+			try
 			{
-				waitInc = 50;
-				if(waitInc > theAsyncWait)
-					waitInc = theAsyncWait;
-			}
-			long now = System.currentTimeMillis();
-			do
+				task.await(theAsyncWait);
+			} finally
 			{
-				try
-				{
-					Thread.sleep(waitInc);
-				} catch(InterruptedException e)
-				{}
-			} while(!finished[0] && System.currentTimeMillis() - now < theAsyncWait);
-			prisms.util.PrismsUtils.end(trans, track);
+				prisms.util.PrismsUtils.end(trans, track);
+			}
 		}
-		if(!finished[0])
+		if(!task.isFinished()
+			&& (!getUI().isProgressShowing() || "UI".equals(event.get("plugin"))))
 		{
-			String taskID = Integer.toHexString(toRun.hashCode());
+			theRunningTasks.put(task.getID(), task);
+			// The task may have finished before it was registered
+			if(task.isFinished())
+				theRunningTasks.remove(task.getID(), task);
 			JSONObject getEvents = new JSONObject();
 			getEvents.put("method", "getEvents");
-			getEvents.put("taskID", taskID);
-			if(!finished[0] && (!getUI().isProgressShowing() || "UI".equals(event.get("plugin"))))
-			{
-				theRunningTasks.put(taskID, finished);
-				JSONArray ret = getEvents();
-				ret.add(getEvents);
-				return ret;
-			}
+			getEvents.put("taskID", task.getID());
+			JSONArray ret = getEvents();
+			ret.add(getEvents);
+			return ret;
 		}
 		return getEvents();
 	}
 
+	/**
+	 * @param taskID The ID of the task to get
+	 * @return The asynchronous task with the given ID that the client is waiting on, or null if no
+	 *         such task is registered or the task has finished
+	 */
+	public AsyncTask getRunningTask(String taskID)
+	{
+		return theRunningTasks.get(taskID);
+	}
+
+	/** @return All asynchronous tasks registered with this session that the client is waiting on */
+	public AsyncTask [] getRunningTasks()
+	{
+		return theRunningTasks.values().toArray(new AsyncTask [0]);
+	}
+
 	void process(JSONObject event)
 	{
 		try
@@ -562,6 +757,55 @@ public class PrismsSession
 
 	/** Runs all tasks added with {@link #runEventually(Runnable)} */
 	public void runTasks()
+	{
+		theTaskRunLock.lock();
+		try
+		{
+			_runTasks();
+		} finally
+		{
+			theTaskRunLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs all tasks added with {@link #runEventually(Runnable)} unless another thread is already
+	 * running them
+	 */
+	void runTasksIfIdle()
+	{
+		if(!theTaskRunLock.tryLock())
+			return;
+		try
+		{
+			_runTasks();
+		} finally
+		{
+			theTaskRunLock.unlock();
+		}
+	}
+
+	/** @return Whether a transaction (other than the current thread's) is active on this session */
+	boolean isBusy()
+	{
+		int active = theActiveTransactions.get();
+		PrismsTransaction trans = theApp.getEnvironment().getTransaction();
+		if(trans != null && trans.getSession() == this)
+			active--;
+		return active > 0;
+	}
+
+	void transactionStarted()
+	{
+		theActiveTransactions.incrementAndGet();
+	}
+
+	void transactionFinished()
+	{
+		theActiveTransactions.decrementAndGet();
+	}
+
+	private void _runTasks()
 	{
 		PrismsTransaction trans = getTransaction();
 		boolean hasTasks;
@@ -630,7 +874,7 @@ public class PrismsSession
 						prisms.util.PrismsUtils.end(trans, totalTrack);
 					}
 				}
-				hasTasks |= theApp.runScheduledTasks();
+				hasTasks |= theApp.checkStaleProperties(this);
 				hasTasks |= theApp.runPropertySetActions();
 			} while(hasTasks);
 		} finally
@@ -663,15 +907,111 @@ public class PrismsSession
 	public org.json.simple.JSONArray getEvents()
 	{
 		org.json.simple.JSONArray events = new org.json.simple.JSONArray();
-		java.util.Iterator<JSONObject> iter = theOutgoingQueue.iterator();
-		while(iter.hasNext())
+		OutgoingEvent evt = theOutgoingQueue.poll();
+		while(evt != null)
 		{
-			events.add(iter.next());
-			iter.remove();
+			if(evt.theKey != null)
+				theCoalescedEvents.remove(evt.theKey, evt);
+			if(!evt.isSuperseded)
+				events.add(evt.theEvent);
+			evt = theOutgoingQueue.poll();
 		}
 		return events;
 	}
 
+	/**
+	 * Waits for events to be posted to this session, returning as soon as any are available. This
+	 * allows a client to hold a request open against this session (a long poll) rather than
+	 * polling repeatedly with getEvents. Tasks scheduled with {@link #runEventually(Runnable)} and
+	 * changes to global properties while waiting are processed on the calling thread so that the
+	 * events they post can be returned.
+	 * 
+	 * @param maxHold The maximum amount of time to wait for an event to be posted, in milliseconds
+	 * @param batchWindow The amount of time to wait after the first event is available for more
+	 *        events to be posted so that they may be sent to the client together
+	 * @return The events posted to this session, or an empty array if no events were posted within
+	 *         <code>maxHold</code> or if this session was killed or destroyed in the meantime
+	 */
+	public JSONArray waitForEvents(long maxHold, long batchWindow)
+	{
+		long now = System.currentTimeMillis();
+		long end = now + maxHold;
+		boolean interrupted = false;
+		while(theOutgoingQueue.isEmpty() && !interrupted && !isKilled && !isDestroyed && now < end)
+		{
+			if(hasPendingTasks())
+			{
+				PrismsTransaction trans = theApp.getEnvironment().transact(this,
+					PrismsTransaction.Stage.processEvent);
+				try
+				{
+					runTasks();
+				} finally
+				{
+					theApp.getEnvironment().finish(trans);
+				}
+				now = System.currentTimeMillis();
+				continue;
+			}
+			synchronized(theOutgoingLock)
+			{
+				theEventWaiters++;
+				try
+				{
+					while(theOutgoingQueue.isEmpty() && !hasPendingTasks() && !isKilled
+						&& !isDestroyed && now < end)
+					{
+						try
+						{
+							theOutgoingLock.wait(end - now);
+						} catch(InterruptedException e)
+						{
+							interrupted = true;
+							break;
+						}
+						now = System.currentTimeMillis();
+					}
+				} finally
+				{
+					theEventWaiters--;
+				}
+			}
+		}
+		if(batchWindow > 0 && !theOutgoingQueue.isEmpty() && !isKilled && !isDestroyed)
+		{
+			/* Events posted by a single operation tend to arrive in bursts. Waiting a short time
+			 * lets us send the whole burst in one response instead of one response per event. */
+			if(batchWindow > end - now)
+				batchWindow = end - now;
+			if(batchWindow > 0)
+				try
+				{
+					Thread.sleep(batchWindow);
+				} catch(InterruptedException e)
+				{}
+		}
+		return getEvents();
+	}
+
+	/**
+	 * @return Whether this session has tasks or global property changes waiting for
+	 *         {@link #runTasks()}
+	 */
+	boolean hasPendingTasks()
+	{
+		return !theTaskList.isEmpty() || theApp.hasStaleProperties(this);
+	}
+
+	void wakeEventWaiters()
+	{
+		if(theEventWaiters == 0)
+			return;
+		synchronized(theOutgoingLock)
+		{
+			theOutgoingLock.notifyAll();
+		}
+	}
+
 	/** Initializes this session for a client that has just connected or reconnected to it */
 	public void init()
 	{
@@ -747,6 +1087,23 @@ public class PrismsSession
 		renew();
 	}
 
+	/**
+	 * Creates an event that, when processed by this session, processes each of the given events in
+	 * order within the same transaction. A failure processing one event is reported to the client
+	 * but does not prevent the following events from being processed.
+	 * 
+	 * @param events The events to process
+	 * @return The batch event to pass to {@link #processSync(JSONObject)} or
+	 *         {@link #processAsync(JSONObject)}
+	 */
+	public static JSONObject batch(JSONArray events)
+	{
+		JSONObject ret = new JSONObject();
+		ret.put("method", "batch");
+		ret.put("events", events);
+		return ret;
+	}
+
 	/**
 	 * Called when this session and not an individual plugin should process an event
 	 * 
@@ -754,7 +1111,19 @@ public class PrismsSession
 	 */
 	public void processEvent(JSONObject evt)
 	{
-		if("init".equals(evt.get("method")))
+		if("batch".equals(evt.get("method")))
+		{
+			Object events = evt.get("events");
+			if(!(events instanceof JSONArray))
+				throw new IllegalArgumentException("Batch event requires an events array: " + evt);
+			for(Object subEvt : (JSONArray) events)
+			{
+				if(!(subEvt instanceof JSONObject))
+					throw new IllegalArgumentException("Illegal event in batch: " + subEvt);
+				process((JSONObject) subEvt);
+			}
+		}
+		else if("init".equals(evt.get("method")))
 			clearOutgoingQueue();
 		else if("addPlugin".equals(evt.get("method")))
 		{
@@ -775,7 +1144,9 @@ public class PrismsSession
 	}
 
 	/**
-	 * Posts an event to send to the client
+	 * Posts an event to send to the client. If the client config has a
+	 * {@link ClientConfig#getCoalescingPolicy() coalescing policy}, any event still waiting to be
+	 * sent that the new event supersedes is dropped.
 	 * 
 	 * @param evt The event object to send
 	 */
@@ -800,7 +1171,17 @@ public class PrismsSession
 				+ " for a web service");
 			return;
 		}
-		theOutgoingQueue.add(evt);
+		CoalescingPolicy coalescer = theClient.getCoalescingPolicy();
+		String key = coalescer == null ? null : coalescer.getCoalesceKey(evt);
+		OutgoingEvent outgoing = new OutgoingEvent(evt, key);
+		if(key != null)
+		{
+			OutgoingEvent superseded = theCoalescedEvents.put(key, outgoing);
+			if(superseded != null)
+				superseded.isSuperseded = true;
+		}
+		theOutgoingQueue.add(outgoing);
+		wakeEventWaiters();
 		if(theListener != null)
 			theListener.eventPosted(evt);
 	}
@@ -813,6 +1194,7 @@ public class PrismsSession
 	public void runEventually(Runnable task)
 	{
 		theTaskList.add(task);
+		wakeEventWaiters();
 	}
 
 	/**
@@ -912,7 +1294,9 @@ public class PrismsSession
 		try
 		{
 			/* Many property sets can be going on at once, but only one for each property in a session */
-			synchronized(getPropertyLock(property))
+			PrismsApplication.PrismsPropertyLock lock = getPropertyLock(property);
+			lock.lockWrite();
+			try
 			{
 				PrismsPCE<T> propEvt = new PrismsPCE<T>(getApp(), this, property, oldValue,
 					propValue);
@@ -922,7 +1306,7 @@ public class PrismsSession
 					theProperties.remove(property);
 				else
 					theProperties.put(property, propValue);
-				listeners = getPropertyChangeListeners(property);
+				listeners = thePCLs.getListeners(property);
 
 				for(int i = 0; i < eventProps.length; i += 2)
 				{
@@ -950,6 +1334,9 @@ public class PrismsSession
 					}
 				}
 				thePropertyStack.remove(property);
+			} finally
+			{
+				lock.unlockWrite();
 			}
 		} finally
 		{
@@ -958,7 +1345,14 @@ public class PrismsSession
 		}
 	}
 
-	private Object getPropertyLock(PrismsProperty<?> property)
+	/** @return The locks for all properties that have been set in this session */
+	PrismsApplication.PrismsPropertyLock [] getPropertyLocks()
+	{
+		return thePropertyLocks.values().toArray(
+			new PrismsApplication.PrismsPropertyLock [thePropertyLocks.size()]);
+	}
+
+	private PrismsApplication.PrismsPropertyLock getPropertyLock(PrismsProperty<?> property)
 	{
 		PrismsApplication.PrismsPropertyLock ret = thePropertyLocks.get(property);
 		if(ret == null)
@@ -983,7 +1377,7 @@ public class PrismsSession
 	 */
 	public <T> PrismsPCL<T> [] getPropertyChangeListeners(PrismsProperty<T> prop)
 	{
-		return thePCLs.getListeners(prop);
+		return thePCLs.getListeners(prop).clone();
 	}
 
 	/**
@@ -1039,10 +1433,16 @@ public class PrismsSession
 	 */
 	public void fireEvent(PrismsEvent event)
 	{
-		PrismsEventListener [] listeners = getEventListeners(event.name);
+		PrismsEventListener [] listeners = theELs.getListeners(event.name);
 		PrismsTransaction trans = getTransaction();
 		for(PrismsEventListener l : listeners)
 		{
+			if(l instanceof AsyncPEL
+				|| (!theAsyncListeners.isEmpty() && theAsyncListeners.contains(l)))
+			{
+				fireAsync(l, event);
+				continue;
+			}
 			TrackNode [] tracks = new TrackNode [3];
 			tracks[0] = prisms.util.PrismsUtils.track(trans, "Event Listener");
 			tracks[1] = prisms.util.PrismsUtils.track(trans, "Event " + event.name);
@@ -1058,6 +1458,199 @@ public class PrismsSession
 		}
 	}
 
+	/** An event to be delivered to an asynchronous listener */
+	private static class AsyncNotification
+	{
+		final PrismsEventListener theListener;
+
+		final PrismsEvent theEvent;
+
+		AsyncNotification(PrismsEventListener listener, PrismsEvent event)
+		{
+			theListener = listener;
+			theEvent = event;
+		}
+	}
+
+	/**
+	 * The maximum number of asynchronous event notifications that may be waiting in a session. A
+	 * thread firing an event when the queue is this deep waits for it to drain.
+	 */
+	public static final int MAX_ASYNC_EVENT_DEPTH = 1000;
+
+	/** The longest time that a thread firing an event will wait for the asynchronous queue to drain */
+	private static final long MAX_ASYNC_EVENT_WAIT = 30000;
+
+	/**
+	 * Marks a listener to be notified asynchronously in this session, or to be notified synchronously
+	 * again. Listeners that implement {@link AsyncPEL} are always notified asynchronously.
+	 * 
+	 * @param el The listener to set the dispatch mode of
+	 * @param async Whether the listener should be notified asynchronously
+	 */
+	public void setAsyncEventListener(PrismsEventListener el, boolean async)
+	{
+		if(async)
+			theAsyncListeners.add(el);
+		else
+			theAsyncListeners.remove(el);
+	}
+
+	/** @return The number of asynchronous event notifications waiting to be dispatched */
+	public int getAsyncEventDepth()
+	{
+		return theAsyncEventDepth.get();
+	}
+
+	/** @return The greatest number of asynchronous event notifications that have been waiting */
+	public int getMaxAsyncEventDepth()
+	{
+		return theMaxAsyncEventDepth;
+	}
+
+	private void fireAsync(PrismsEventListener l, PrismsEvent event)
+	{
+		if(theAsyncEventDepth.get() >= MAX_ASYNC_EVENT_DEPTH
+			&& Thread.currentThread() != theAsyncDispatchThread)
+		{
+			/* Back-pressure: the listeners can't keep up, so slow down the thread firing events.
+			 * The dispatch thread itself can never wait for its own queue to drain. */
+			PrismsTransaction trans = getTransaction();
+			TrackNode track = prisms.util.PrismsUtils.track(trans, "Wait for Async Events");
+			try
+			{
+				long end = System.currentTimeMillis() + MAX_ASYNC_EVENT_WAIT;
+				synchronized(theAsyncEvents)
+				{
+					long now = System.currentTimeMillis();
+					while(theAsyncEventDepth.get() >= MAX_ASYNC_EVENT_DEPTH && now < end)
+					{
+						try
+						{
+							theAsyncEvents.wait(end - now);
+						} catch(InterruptedException e)
+						{
+							break;
+						}
+						now = System.currentTimeMillis();
+					}
+				}
+				if(theAsyncEventDepth.get() >= MAX_ASYNC_EVENT_DEPTH)
+					log.warn("Asynchronous event queue for session " + this + " is still "
+						+ theAsyncEventDepth.get() + " deep after " + MAX_ASYNC_EVENT_WAIT + "ms");
+			} finally
+			{
+				prisms.util.PrismsUtils.end(trans, track);
+			}
+		}
+		theAsyncEvents.add(new AsyncNotification(l, event));
+		int depth = theAsyncEventDepth.incrementAndGet();
+		if(depth > theMaxAsyncEventDepth)
+			theMaxAsyncEventDepth = depth;
+		if(isDispatchingAsync.compareAndSet(false, true))
+		{
+			Worker worker = theApp.getEnvironment().getAsyncWorker();
+			if(worker == null)
+				worker = theApp.getEnvironment().getWorker();
+			try
+			{
+				worker.run(new Runnable()
+				{
+					public void run()
+					{
+						dispatchAsync();
+					}
+
+					@Override
+					public String toString()
+					{
+						return "Asynchronous event dispatch for " + PrismsSession.this;
+					}
+				}, new Worker.ErrorListener()
+				{
+					public void error(Error e)
+					{
+						log.error("Asynchronous event dispatch failed", e);
+					}
+
+					public void runtime(RuntimeException e)
+					{
+						if(e instanceof java.util.concurrent.RejectedExecutionException)
+							asyncDispatchRejected(e);
+						else
+							log.error("Asynchronous event dispatch failed", e);
+					}
+				});
+			} catch(RuntimeException e)
+			{
+				asyncDispatchRejected(e);
+			}
+		}
+	}
+
+	/**
+	 * Called when the worker will not run the dispatch task. The dispatch flag is cleared so that
+	 * the next asynchronous notification tries again instead of queueing forever.
+	 */
+	private void asyncDispatchRejected(RuntimeException e)
+	{
+		isDispatchingAsync.set(false);
+		log.warn("Worker rejected asynchronous event dispatch for session " + this + "--"
+			+ theAsyncEventDepth.get() + " notifications will wait for the next event", e);
+	}
+
+	/**
+	 * Notifies asynchronous listeners of their events one at a time, in the order they were fired,
+	 * until the queue is empty
+	 */
+	void dispatchAsync()
+	{
+		do
+		{
+			theAsyncDispatchThread = Thread.currentThread();
+			PrismsTransaction trans = theApp.getEnvironment().transact(this,
+				PrismsTransaction.Stage.external);
+			try
+			{
+				AsyncNotification notification = theAsyncEvents.poll();
+				while(notification != null)
+				{
+					TrackNode [] tracks = new TrackNode [3];
+					tracks[0] = prisms.util.PrismsUtils.track(trans, "Async Event Listener");
+					tracks[1] = prisms.util.PrismsUtils.track(trans, "Event "
+						+ notification.theEvent.name);
+					tracks[2] = prisms.util.PrismsUtils.track(trans, notification.theListener);
+					try
+					{
+						notification.theListener.eventOccurred(this, notification.theEvent);
+					} catch(Throwable e)
+					{
+						log.error("Asynchronous listener " + notification.theListener
+							+ " failed for event " + notification.theEvent.name, e);
+						postOutgoingEvent(wrapError("Error Processing Event "
+							+ notification.theEvent.name, e));
+					} finally
+					{
+						for(int i = tracks.length - 1; i >= 0; i--)
+							prisms.util.PrismsUtils.end(trans, tracks[i]);
+					}
+					if(theAsyncEventDepth.decrementAndGet() == MAX_ASYNC_EVENT_DEPTH - 1)
+						synchronized(theAsyncEvents)
+						{
+							theAsyncEvents.notifyAll();
+						}
+					notification = theAsyncEvents.poll();
+				}
+			} finally
+			{
+				theApp.getEnvironment().finish(trans);
+				theAsyncDispatchThread = null;
+				isDispatchingAsync.set(false);
+			}
+			// An event may have been queued after the last poll but before the flag was cleared
+		} while(!theAsyncEvents.isEmpty() && isDispatchingAsync.compareAndSet(false, true));
+	}
+
 	/**
 	 * Fires an event with implicit event creation
 	 * 
@@ -1075,7 +1668,7 @@ public class PrismsSession
 	 */
 	public PrismsEventListener [] getEventListeners(String eventName)
 	{
-		return theELs.getListeners(eventName);
+		return theELs.getListeners(eventName).clone();
 	}
 
 	/**
@@ -1108,6 +1701,7 @@ public class PrismsSession
 	public void removeEventListener(PrismsEventListener el)
 	{
 		theELs.removeListener(el);
+		theAsyncListeners.remove(el);
 	}
 
 	/**
@@ -1119,12 +1713,26 @@ public class PrismsSession
 	public void removeEventListener(String eventName, PrismsEventListener el)
 	{
 		theELs.removeListener(eventName, el);
+		if(theAsyncListeners.contains(el) && !isEventListener(el))
+			theAsyncListeners.remove(el);
+	}
+
+	/** @return Whether the given listener is still registered for any event */
+	private boolean isEventListener(PrismsEventListener el)
+	{
+		if(org.qommons.ArrayUtils.contains(theELs.getRegisteredListeners(null), el))
+			return true;
+		for(Object eventName : theELs.getAllProperties())
+			if(org.qommons.ArrayUtils.contains(theELs.getRegisteredListeners(eventName), el))
+				return true;
+		return false;
 	}
 
 	/** Discards all outgoing events posted since the last process call */
 	public void clearOutgoingQueue()
 	{
 		theOutgoingQueue.clear();
+		theCoalescedEvents.clear();
 	}
 
 	/** @return The last time the user or client interacted with this session */
@@ -1155,6 +1763,7 @@ public class PrismsSession
 		if(!theApp.getEnvironment().isManager(manager))
 			throw new IllegalArgumentException("Only the manager application may kill sessions");
 		isKilled = true;
+		wakeEventWaiters();
 	}
 
 	/** @return Whether this session has been killed */
@@ -1166,6 +1775,8 @@ public class PrismsSession
 	/** Called when the session is no longer accessible or needed */
 	public void destroy()
 	{
+		isDestroyed = true;
+		wakeEventWaiters();
 		getApp().removeSession(this);
 		fireEvent("destroy");
 	}
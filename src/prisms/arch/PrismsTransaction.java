@@ -22,7 +22,7 @@ public class PrismsTransaction
 		initSession,
 		/**
 		 * Represents a normal PRISMS call, i.e. to
-		 * {@link PrismsSession#processAsync(org.json.simple.JSONObject, boolean[])
+		 * {@link PrismsSession#processAsync(org.json.simple.JSONObject)
 		 * PrismsSession.processAsync} or
 		 * {@link PrismsSession#processSync(org.json.simple.JSONObject) processSync}
 		 */
@@ -212,6 +212,7 @@ public class PrismsTransaction
 			+ " session for " + session.getUser().getName());
 		init(session.getApp(), stage);
 		theSession = session;
+		session.transactionStarted();
 	}
 
 	void init(PrismsApplication app, Stage stage)
@@ -331,6 +332,8 @@ public class PrismsTransaction
 		theThread = null;
 		thePrintConfig = theDefaultPrintConfig;
 		theEvents = null;
+		if(theSession != null)
+			theSession.transactionFinished();
 		theSession = null;
 		theApp = null;
 		theStage = null;
@@ -32,4 +32,25 @@ public interface RemoteEventSerializer
 	 * @throws java.io.InvalidObjectException If the string cannot be deserialized
 	 */
 	org.json.simple.JSONObject deserialize(String evtString) throws java.io.InvalidObjectException;
+
+	/**
+	 * A serializer that can write events directly to a stream without first building the entire
+	 * serialized content in memory
+	 */
+	public static interface Streaming extends RemoteEventSerializer
+	{
+		/**
+		 * Serializes a set of server events directly to a writer
+		 * 
+		 * @param events The events to serialize
+		 * @param out The writer to write the serialized events to
+		 * @param encodeUnicode Whether non-ASCII characters should be written as unicode escapes
+		 *        (see {@link org.qommons.QommonsUtils#encodeUnicode(String)})
+		 * @throws java.io.NotSerializableException If the events cannot be serialized. If this
+		 *         exception is thrown, nothing will have been written to the writer.
+		 * @throws java.io.IOException If an error occurs writing to the writer
+		 */
+		void serialize(org.json.simple.JSONArray events, java.io.Writer out, boolean encodeUnicode)
+			throws java.io.NotSerializableException, java.io.IOException;
+	}
 }
@@ -0,0 +1,360 @@
+/*
+ * ResponseCompression.java Created Oct 17, 2026
+ */
+package prisms.arch;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compresses the content of HTTP responses according to the encodings the client accepts. Content
+ * smaller than a threshold is sent uncompressed, since compressing it costs more than it saves.
+ * Deflaters are pooled, so compressing a response does not allocate a new native zlib stream.
+ */
+public class ResponseCompression
+{
+	static final Logger log = Logger.getLogger(ResponseCompression.class);
+
+	/** The content encodings supported by this class */
+	public static enum Encoding
+	{
+		/** gzip content encoding--deflated content with a gzip header and CRC trailer */
+		gzip,
+		/** deflate content encoding--deflated content in the zlib format */
+		deflate;
+	}
+
+	private static final byte [] GZIP_HEADER = new byte [] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0,
+		0, 0};
+
+	private boolean isEnabled;
+
+	private int theThreshold;
+
+	private int theLevel;
+
+	private final prisms.util.ResourcePool<java.util.zip.Deflater> theGzipDeflaters;
+
+	private final prisms.util.ResourcePool<java.util.zip.Deflater> theZlibDeflaters;
+
+	/** Creates a response compression with default settings */
+	public ResponseCompression()
+	{
+		isEnabled = true;
+		theThreshold = 1024;
+		theLevel = java.util.zip.Deflater.DEFAULT_COMPRESSION;
+		theGzipDeflaters = new prisms.util.ResourcePool<java.util.zip.Deflater>(
+			new DeflaterCreator(true), 16);
+		theZlibDeflaters = new prisms.util.ResourcePool<java.util.zip.Deflater>(
+			new DeflaterCreator(false), 16);
+	}
+
+	private class DeflaterCreator implements
+		prisms.util.ResourcePool.ResourceCreator<java.util.zip.Deflater>
+	{
+		private final boolean isNoWrap;
+
+		DeflaterCreator(boolean noWrap)
+		{
+			isNoWrap = noWrap;
+		}
+
+		public java.util.zip.Deflater createResource()
+		{
+			return new java.util.zip.Deflater(theLevel, isNoWrap);
+		}
+
+		public void destroyResource(java.util.zip.Deflater resource)
+		{
+			resource.end();
+		}
+	}
+
+	/**
+	 * Configures this compression
+	 *
+	 * @param config The configuration to use
+	 */
+	public void configure(PrismsConfig config)
+	{
+		if(config == null)
+			return;
+		isEnabled = config.is("enabled", isEnabled);
+		theThreshold = config.getInt("min-size", theThreshold);
+		theLevel = config.getInt("level", theLevel);
+		if(theLevel != java.util.zip.Deflater.DEFAULT_COMPRESSION
+			&& (theLevel < java.util.zip.Deflater.NO_COMPRESSION
+				|| theLevel > java.util.zip.Deflater.BEST_COMPRESSION))
+		{
+			log.error("Compression level must be between 0 and 9: " + theLevel);
+			theLevel = java.util.zip.Deflater.DEFAULT_COMPRESSION;
+		}
+		int poolSize = config.getInt("pool-size", theGzipDeflaters.getMaxSize());
+		theGzipDeflaters.setMaxSize(poolSize);
+		theZlibDeflaters.setMaxSize(poolSize);
+		// Deflaters created with the old level are discarded
+		theGzipDeflaters.clear();
+		theZlibDeflaters.clear();
+	}
+
+	/** @return Whether this compression is enabled */
+	public boolean isEnabled()
+	{
+		return isEnabled;
+	}
+
+	/** @return The minimum size of content, in bytes, that will be compressed */
+	public int getThreshold()
+	{
+		return theThreshold;
+	}
+
+	/** @return The deflate compression level used by this compression */
+	public int getLevel()
+	{
+		return theLevel;
+	}
+
+	/**
+	 * @param req The request to get the preferred encoding of
+	 * @return The encoding to compress the response with, or null if the response should not be
+	 *         compressed
+	 */
+	public Encoding getEncoding(HttpServletRequest req)
+	{
+		if(!isEnabled)
+			return null;
+		String accept = req.getHeader("Accept-Encoding");
+		if(accept == null)
+			return null;
+		boolean gzip = false, deflate = false;
+		for(String token : accept.split(","))
+		{
+			String name = token;
+			int semi = token.indexOf(';');
+			if(semi >= 0)
+			{
+				name = token.substring(0, semi);
+				String param = token.substring(semi + 1).trim();
+				if(param.startsWith("q="))
+				{
+					try
+					{
+						if(Float.parseFloat(param.substring(2).trim()) <= 0)
+							continue;
+					} catch(NumberFormatException e)
+					{
+						continue;
+					}
+				}
+			}
+			name = name.trim().toLowerCase();
+			if(name.equals("gzip") || name.equals("x-gzip"))
+				gzip = true;
+			else if(name.equals("deflate"))
+				deflate = true;
+		}
+		if(gzip)
+			return Encoding.gzip;
+		else if(deflate)
+			return Encoding.deflate;
+		else
+			return null;
+	}
+
+	/**
+	 * Gets a stream to write response content to. The content will be compressed if the client
+	 * accepts a supported encoding and the content is at least as large as this compression's
+	 * threshold. The returned stream must be closed to send the content.
+	 *
+	 * @param req The request to respond to
+	 * @param resp The response to write to
+	 * @return The stream to write the response content to
+	 * @throws IOException If the response's output stream cannot be retrieved
+	 */
+	public java.io.OutputStream getOutputStream(HttpServletRequest req, HttpServletResponse resp)
+		throws IOException
+	{
+		Encoding encoding = getEncoding(req);
+		if(isEnabled)
+			resp.setHeader("Vary", "Accept-Encoding");
+		if(encoding == null)
+			return resp.getOutputStream();
+		return new CompressingStream(resp, encoding);
+	}
+
+	/**
+	 * Gets a writer to write response content to, using the response's character encoding
+	 *
+	 * @param req The request to respond to
+	 * @param resp The response to write to
+	 * @return The writer to write the response content to
+	 * @throws IOException If the response's output stream cannot be retrieved
+	 * @see #getOutputStream(HttpServletRequest, HttpServletResponse)
+	 */
+	public java.io.PrintWriter getWriter(HttpServletRequest req, HttpServletResponse resp)
+		throws IOException
+	{
+		String charSet = resp.getCharacterEncoding();
+		if(charSet == null)
+			charSet = "ISO-8859-1";
+		return new java.io.PrintWriter(new java.io.OutputStreamWriter(getOutputStream(req, resp),
+			charSet));
+	}
+
+	/** Releases the pooled resources of this compression */
+	public void close()
+	{
+		theGzipDeflaters.close();
+		theZlibDeflaters.close();
+	}
+
+	/**
+	 * Buffers content until the threshold is reached. If the stream is closed before then, the
+	 * content is sent uncompressed; otherwise the content encoding is set and all content is
+	 * compressed.
+	 */
+	private class CompressingStream extends java.io.OutputStream
+	{
+		private final HttpServletResponse theResponse;
+
+		private final Encoding theEncoding;
+
+		private byte [] theBuffer;
+
+		private int theCount;
+
+		private java.io.OutputStream theOut;
+
+		private java.util.zip.Deflater theDeflater;
+
+		private boolean isPooled;
+
+		private java.util.zip.DeflaterOutputStream theDeflaterOut;
+
+		private java.util.zip.CRC32 theCRC;
+
+		private boolean isClosed;
+
+		CompressingStream(HttpServletResponse resp, Encoding encoding)
+		{
+			theResponse = resp;
+			theEncoding = encoding;
+			theBuffer = new byte [theThreshold > 0 ? theThreshold : 1];
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			write(new byte [] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte [] b, int off, int len) throws IOException
+		{
+			if(isClosed)
+				throw new IOException("Stream closed");
+			if(theDeflaterOut == null)
+			{
+				if(theCount + len < theBuffer.length)
+				{
+					System.arraycopy(b, off, theBuffer, theCount, len);
+					theCount += len;
+					return;
+				}
+				startCompressing();
+			}
+			if(theCRC != null)
+				theCRC.update(b, off, len);
+			theDeflaterOut.write(b, off, len);
+		}
+
+		private void startCompressing() throws IOException
+		{
+			theResponse.setHeader("Content-Encoding", theEncoding.name());
+			theOut = theResponse.getOutputStream();
+			prisms.util.ResourcePool<java.util.zip.Deflater> pool;
+			pool = theEncoding == Encoding.gzip ? theGzipDeflaters : theZlibDeflaters;
+			try
+			{
+				theDeflater = pool.getResource(false);
+			} catch(prisms.util.ResourcePool.ResourceCreationException e)
+			{
+				log.error("Could not create deflater", e);
+			} catch(IllegalStateException e)
+			{ // Pool closed
+			}
+			isPooled = theDeflater != null;
+			if(theDeflater == null)
+				theDeflater = new java.util.zip.Deflater(theLevel, theEncoding == Encoding.gzip);
+			if(theEncoding == Encoding.gzip)
+			{
+				theOut.write(GZIP_HEADER);
+				theCRC = new java.util.zip.CRC32();
+			}
+			theDeflaterOut = new java.util.zip.DeflaterOutputStream(theOut, theDeflater, 8192);
+			if(theCount > 0)
+			{
+				if(theCRC != null)
+					theCRC.update(theBuffer, 0, theCount);
+				theDeflaterOut.write(theBuffer, 0, theCount);
+			}
+			theBuffer = null;
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			/* Flushing while buffering would force us to commit to not compressing. Flushing
+			 * deflated content would hurt the compression ratio. Content is sent on close. */
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if(isClosed)
+				return;
+			isClosed = true;
+			if(theDeflaterOut == null)
+			{
+				java.io.OutputStream out = theResponse.getOutputStream();
+				theResponse.setContentLength(theCount);
+				out.write(theBuffer, 0, theCount);
+				out.close();
+				return;
+			}
+			try
+			{
+				theDeflaterOut.finish();
+				if(theCRC != null)
+				{
+					writeInt((int) theCRC.getValue());
+					writeInt((int) theDeflater.getBytesRead());
+				}
+				theOut.close();
+			} finally
+			{
+				if(isPooled)
+				{
+					theDeflater.reset();
+					(theEncoding == Encoding.gzip ? theGzipDeflaters : theZlibDeflaters)
+						.releaseResource(theDeflater);
+				}
+				else
+					theDeflater.end();
+			}
+		}
+
+		private void writeInt(int i) throws IOException
+		{
+			theOut.write(i & 0xff);
+			theOut.write((i >> 8) & 0xff);
+			theOut.write((i >> 16) & 0xff);
+			theOut.write((i >> 24) & 0xff);
+		}
+	}
+}
@@ -213,6 +213,58 @@ public class IDGenerator
 
 	private PreparedStatement theAIUpdater;
 
+	/** A block of IDs reserved in the database for a table, handed out from memory */
+	static class IDBlock
+	{
+		final String theTable;
+
+		final String theWhere;
+
+		final long theStart;
+
+		final long theEnd;
+
+		/** IDs within the block that were already in use when it was reserved, sorted */
+		final long [] theUsed;
+
+		final int theSize;
+
+		final long theReserveTime;
+
+		final java.util.concurrent.atomic.AtomicLong theCursor;
+
+		IDBlock(String table, String where, long start, long end, long [] used, int size)
+		{
+			theTable = table;
+			theWhere = where;
+			theStart = start;
+			theEnd = end;
+			theUsed = used;
+			theSize = size;
+			theReserveTime = System.currentTimeMillis();
+			theCursor = new java.util.concurrent.atomic.AtomicLong(start);
+		}
+
+		/** @return The next unused ID in this block, or -1 if the block is exhausted */
+		long next()
+		{
+			while(true)
+			{
+				long ret = theCursor.getAndIncrement();
+				if(ret > theEnd)
+					return -1;
+				if(java.util.Arrays.binarySearch(theUsed, ret) < 0)
+					return ret;
+			}
+		}
+	}
+
+	private int theMinBlockSize;
+
+	private int theMaxBlockSize;
+
+	private final java.util.concurrent.ConcurrentHashMap<String, IDBlock> theBlocks;
+
 	/**
 	 * Creates an ID generator for a given connection
 	 * 
@@ -249,6 +301,33 @@ public class IDGenerator
 		});
 		isShared = theTransactor.getConnectionConfig().is("shared", false);
 		theCenterID = -1;
+		theBlocks = new java.util.concurrent.ConcurrentHashMap<String, IDBlock>();
+		prisms.arch.PrismsConfig blockConfig = theTransactor.getConnectionConfig().subConfig(
+			"id-blocks");
+		if(blockConfig != null)
+			setBlockSize(blockConfig.getInt("min", 10), blockConfig.getInt("max", 1000));
+		else
+			setBlockSize(1, 1);
+	}
+
+	/**
+	 * Sets the number of IDs that {@link #getNextID(String, String, Statement, String, String)}
+	 * reserves in the database at once. IDs in a reserved block are handed out from memory. The
+	 * size of each block adapts to demand: it doubles when a block is used up quickly and halves
+	 * when a block lasts a long time. Unused IDs are returned when this generator is
+	 * {@link #destroy() destroyed} if no other instance has reserved IDs for the table since.
+	 * Block sizes may also be configured with an id-blocks element (with min and max) in the
+	 * generator's connection configuration.
+	 * 
+	 * @param min The minimum number of IDs to reserve at once. 1 disables block reservation.
+	 * @param max The maximum number of IDs to reserve at once
+	 */
+	public void setBlockSize(int min, int max)
+	{
+		if(min < 1 || max < min)
+			throw new IllegalArgumentException("Illegal block size: " + min + " to " + max);
+		theMinBlockSize = min;
+		theMaxBlockSize = max;
 	}
 
 	/**
@@ -730,9 +809,63 @@ public class IDGenerator
 	 * @param where The where clause that should be used to get the next ID
 	 * @return The next ID that should be used for an entry in the table
 	 * @throws PrismsException If an error occurs deriving the data
+	 * @see #setBlockSize(int, int)
 	 */
-	public synchronized long getNextID(String table, String column, Statement extStmt,
-		String extPrefix, String where) throws PrismsException
+	public long getNextID(String table, String column, Statement extStmt, String extPrefix,
+		String where) throws PrismsException
+	{
+		if(theTransactor == null)
+			throw new IllegalStateException("This ID generator has been closed");
+		if(theMaxBlockSize <= 1)
+			return allocate(table, column, extStmt, extPrefix, where, 1).theStart;
+		String key = where == null ? table : table + " WHERE " + where;
+		IDBlock block = theBlocks.get(key);
+		long ret = block == null ? -1 : block.next();
+		if(ret >= 0)
+			return ret;
+		synchronized(this)
+		{
+			// Another thread may have reserved a new block while we waited
+			block = theBlocks.get(key);
+			ret = block == null ? -1 : block.next();
+			while(ret < 0)
+			{
+				int size;
+				if(block == null)
+					size = theMinBlockSize;
+				else
+				{
+					long lifetime = System.currentTimeMillis() - block.theReserveTime;
+					if(lifetime < 1000)
+						size = Math.min(block.theSize * 2, theMaxBlockSize);
+					else if(lifetime > 60000)
+						size = Math.max(block.theSize / 2, theMinBlockSize);
+					else
+						size = block.theSize;
+				}
+				block = allocate(table, column, extStmt, extPrefix, where, size);
+				theBlocks.put(key, block);
+				ret = block.next();
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Reserves a block of IDs in the database
+	 * 
+	 * @param table The name of the table to get IDs for
+	 * @param column The ID column of the table
+	 * @param extStmt The statement pointing to the database where the table resides
+	 * @param extPrefix The prefix for the table in the external database
+	 * @param where The where clause that should be used to get the IDs
+	 * @param size The number of IDs to reserve
+	 * @return The block of IDs reserved. The block may be smaller than requested if the end of the
+	 *         center's ID range is reached.
+	 * @throws PrismsException If an error occurs deriving the data
+	 */
+	private synchronized IDBlock allocate(String table, String column, Statement extStmt,
+		String extPrefix, String where, int size) throws PrismsException
 	{
 		if(theTransactor == null)
 			throw new IllegalStateException("This ID generator has been closed");
@@ -751,6 +884,7 @@ public class IDGenerator
 
 			boolean update = rs.next();
 			long ret;
+			long end;
 			if(update)
 				ret = rs.getLong(1);
 			else
@@ -810,10 +944,11 @@ public class IDGenerator
 						ret = next + 1;
 				}
 				sql = null;
+				end = Math.min(ret + size - 1, centerMax);
 				// update the db
 				if(update)
 				{
-					theAIUpdater.setLong(1, ret);
+					theAIUpdater.setLong(1, end);
 					theAIUpdater.setString(2, table);
 					theAIUpdater.setString(3, where == null ? "none" : where);
 					theAIUpdater.executeUpdate();
@@ -823,7 +958,7 @@ public class IDGenerator
 				{
 					theAIInserter.setString(1, table);
 					theAIInserter.setString(2, where == null ? "none" : where);
-					theAIInserter.setLong(3, ret);
+					theAIInserter.setLong(3, end);
 					theAIInserter.executeUpdate();
 					theAIInserter.clearParameters();
 				}
@@ -837,13 +972,34 @@ public class IDGenerator
 					throw new PrismsException("All " + table + " ids are used!");
 
 				ret = nextTry;
-				theAIUpdater.setLong(1, nextTry);
+				end = Math.min(ret + size - 1, centerMax);
+				theAIUpdater.setLong(1, end);
 				theAIUpdater.setString(2, table);
 				theAIUpdater.setString(3, where == null ? "none" : where);
 				theAIUpdater.executeUpdate();
 				theAIUpdater.clearParameters();
 			}
-			return ret;
+			long [] used;
+			if(end > ret)
+			{
+				// Find the IDs in the block that are already taken
+				sql = "SELECT " + column + " FROM " + extPrefix + table + " WHERE " + column + ">"
+					+ ret + " AND " + column + "<=" + end;
+				if(where != null)
+					sql += " AND " + where;
+				sql += " ORDER BY " + column;
+				rs = extStmt.executeQuery(sql);
+				org.qommons.LongList usedList = new org.qommons.LongList();
+				while(rs.next())
+					usedList.add(rs.getLong(1));
+				rs.close();
+				rs = null;
+				sql = null;
+				used = usedList.toArray();
+			}
+			else
+				used = new long [0];
+			return new IDBlock(table, where, ret, end, used, size);
 		} catch(SQLException e)
 		{
 			throw new PrismsException("Could not get next ID: SQL=" + sql, e);
@@ -1055,6 +1211,9 @@ public class IDGenerator
 
 	void createPreparedCalls()
 	{
+		/* These are deliberately prepared on the shared connection rather than through
+		 * getPreparedStatement. ID reservations and table locks must be committed and seen by
+		 * other instances right away, not when the transaction using the IDs commits. */
 		java.sql.Connection conn;
 		try
 		{
@@ -1194,9 +1353,69 @@ public class IDGenerator
 		}
 	}
 
+	/**
+	 * Gives back the IDs in reserved blocks that have not been handed out, if no other instance has
+	 * reserved IDs for the block's table since
+	 */
+	private void returnUnusedIDs()
+	{
+		for(IDBlock block : theBlocks.values())
+		{
+			// Claim the rest of the block atomically so it cannot be handed out after it is returned
+			long next = block.theCursor.getAndSet(block.theEnd + 1);
+			if(next > block.theEnd)
+				continue;
+			String where = block.theWhere == null ? "none" : block.theWhere;
+			ResultSet rs = null;
+			try
+			{
+				lock(block.theTable, block.theWhere);
+				try
+				{
+					theAISelector.setString(1, block.theTable);
+					theAISelector.setString(2, where);
+					rs = theAISelector.executeQuery();
+					boolean current = rs.next() && rs.getLong(1) == block.theEnd;
+					rs.close();
+					rs = null;
+					theAISelector.clearParameters();
+					if(current)
+					{
+						theAIUpdater.setLong(1, next - 1);
+						theAIUpdater.setString(2, block.theTable);
+						theAIUpdater.setString(3, where);
+						theAIUpdater.executeUpdate();
+						theAIUpdater.clearParameters();
+					}
+				} finally
+				{
+					unlock(block.theTable, block.theWhere);
+				}
+			} catch(SQLException e)
+			{
+				log.error("Could not return unused IDs for " + block.theTable, e);
+			} catch(RuntimeException e)
+			{
+				log.error("Could not return unused IDs for " + block.theTable, e);
+			} finally
+			{
+				if(rs != null)
+					try
+					{
+						rs.close();
+					} catch(SQLException e)
+					{
+						log.error("Connection error", e);
+					}
+			}
+		}
+		theBlocks.clear();
+	}
+
 	/** Performs steps to shut down this PRISMS database connection */
 	public synchronized void destroy()
 	{
+		returnUnusedIDs();
 		dropInstance();
 		closePreparedCalls();
 		theTransactor.release();
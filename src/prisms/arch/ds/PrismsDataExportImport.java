@@ -771,6 +771,7 @@ public class PrismsDataExportImport
 				changeReader.readChange(obj);
 				obj = jsr.parseObject();
 			}
+			changeReader.flush();
 			jsr.endArray(null);
 			message.append(", ").append(changes).append(" changes");
 			changeReader = null;
@@ -910,15 +911,36 @@ public class PrismsDataExportImport
 										log.error("Could not get associated changes", e);
 										continue;
 									}
+									int found = 0;
+									for(int i = 0; i < assocChanges.length; i++)
+										if(assocChanges[i] != null)
+											found++;
+									ChangeRecord [] foundChanges = new ChangeRecord [found];
+									boolean [] foundErrors = new boolean [found];
+									found = 0;
 									for(int i = 0; i < assocChanges.length; i++)
 									{
 										if(assocChanges[i] != null)
+										{
+											foundChanges[found] = assocChanges[i];
+											foundErrors[found] = assocErrors.get(i);
+											found++;
+										}
+									}
+									try
+									{
+										sync.getKeeper().associateAll(sr, foundChanges, foundErrors);
+									} catch(PrismsRecordException e)
+									{
+										// Associate singly so one bad association does not drop the rest
+										log.warn("Could not associate " + found + " changes--associating singly", e);
+										for(int i = 0; i < foundChanges.length; i++)
 											try
 											{
-												sync.getKeeper().associate(assocChanges[i], sr, assocErrors.get(i));
-											} catch(PrismsRecordException e)
+												sync.getKeeper().associate(foundChanges[i], sr, foundErrors[i]);
+											} catch(PrismsRecordException e2)
 											{
-												log.error("Could not associated change", e);
+												log.error("Could not associate change", e2);
 											}
 									}
 								} finally
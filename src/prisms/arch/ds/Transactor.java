@@ -152,6 +152,28 @@ public interface Transactor<T extends Throwable> extends Cloneable
 	 */
 	<T2 extends T> Object performTransaction(TransactionOperation<T2> op, String ifError) throws T;
 
+	/**
+	 * Gets a prepared statement for SQL from a cache kept for the connection that
+	 * {@link #getConnection()} would return. Statements that are used repeatedly are only parsed
+	 * by the database once. The statement is reserved for the caller until it is given back with
+	 * {@link #releaseStatement(java.sql.PreparedStatement)}, which must be done on the same thread
+	 * and, if called within a {@link #performTransaction(TransactionOperation, String)
+	 * transaction}, before the transaction finishes. The caller must not close the statement.
+	 * 
+	 * @param sql The SQL to get the prepared statement for
+	 * @return The prepared statement for the SQL
+	 * @throws T If the statement cannot be prepared
+	 */
+	java.sql.PreparedStatement getPreparedStatement(String sql) throws T;
+
+	/**
+	 * Gives back a statement from {@link #getPreparedStatement(String)} to be cached for reuse. Any
+	 * parameters set on the statement are cleared.
+	 * 
+	 * @param stmt The statement to give back
+	 */
+	void releaseStatement(java.sql.PreparedStatement stmt);
+
 	/**
 	 * Retrieves values from a single row of the database.
 	 * 
@@ -0,0 +1,16 @@
+/*
+ * AsyncPEL.java Created Oct 17, 2026
+ */
+package prisms.arch.event;
+
+/**
+ * A marker for a {@link PrismsEventListener} that should be notified asynchronously. Instead of
+ * being called in the transaction that fires the event, an asynchronous listener is called later
+ * in a background transaction for the session. Asynchronous listeners in a session are notified one
+ * at a time in the order their events were fired. Any listener may also be made asynchronous with
+ * {@link prisms.arch.PrismsSession#setAsyncEventListener(PrismsEventListener, boolean)} or with an
+ * <code>async</code> element in its configuration.
+ */
+public interface AsyncPEL extends PrismsEventListener
+{
+}
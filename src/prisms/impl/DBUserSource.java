@@ -888,15 +888,16 @@ public class DBUserSource implements ScalableUserSource
 		if(user.equals(theAnonymousUser))
 			return true;
 		String sql = null;
-		Statement stmt = null;
+		java.sql.PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try
 		{
-			sql = "SELECT * FROM " + theTransactor.getTablePrefix()
-				+ "prisms_user_app_assoc WHERE assocUser=" + user.getID() + " AND assocApp="
-				+ toSQL(app.getName());
-			stmt = theTransactor.getConnection().createStatement();
-			rs = stmt.executeQuery(sql);
+			sql = "SELECT assocUser FROM " + theTransactor.getTablePrefix()
+				+ "prisms_user_app_assoc WHERE assocUser=? AND assocApp=?";
+			stmt = theTransactor.getPreparedStatement(sql);
+			stmt.setLong(1, user.getID());
+			stmt.setString(2, app.getName());
+			rs = stmt.executeQuery();
 			return rs.next();
 		} catch(SQLException e)
 		{
@@ -911,11 +912,7 @@ public class DBUserSource implements ScalableUserSource
 				} catch(SQLException e)
 				{}
 			if(stmt != null)
-				try
-				{
-					stmt.close();
-				} catch(SQLException e)
-				{}
+				theTransactor.releaseStatement(stmt);
 		}
 	}
 
@@ -1739,16 +1736,14 @@ public class DBUserSource implements ScalableUserSource
 			return null;
 		String sql = null;
 		boolean closeAfter = false;
+		java.sql.PreparedStatement pStmt = null;
 		ResultSet rs = null;
 		try
 		{
-			sql = "SELECT * FROM " + theTransactor.getTablePrefix() + "prisms_user WHERE id=" + id;
-			if(stmt == null)
-			{
-				closeAfter = true;
-				stmt = theTransactor.getConnection().createStatement();
-			}
-			rs = stmt.executeQuery(sql);
+			sql = "SELECT * FROM " + theTransactor.getTablePrefix() + "prisms_user WHERE id=?";
+			pStmt = theTransactor.getPreparedStatement(sql);
+			pStmt.setLong(1, id);
+			rs = pStmt.executeQuery();
 			if(!rs.next())
 				return null;
 			boolean readOnly = boolFromSql(rs.getString("isReadOnly"));
@@ -1759,10 +1754,15 @@ public class DBUserSource implements ScalableUserSource
 			rs.close();
 			rs = null;
 
+			theTransactor.releaseStatement(pStmt);
+			pStmt = null;
+
 			sql = "SELECT id, groupApp FROM " + theTransactor.getTablePrefix()
 				+ "prisms_user_group_assoc INNER JOIN " + theTransactor.getTablePrefix()
-				+ "prisms_user_group ON assocGroup=id WHERE assocUser=" + id;
-			rs = stmt.executeQuery(sql);
+				+ "prisms_user_group ON assocGroup=id WHERE assocUser=?";
+			pStmt = theTransactor.getPreparedStatement(sql);
+			pStmt.setLong(1, id);
+			rs = pStmt.executeQuery();
 			ArrayList<Long> groupIDs = new ArrayList<Long>();
 			ArrayList<String> appNames = new ArrayList<String>();
 			while(rs.next())
@@ -1772,6 +1772,13 @@ public class DBUserSource implements ScalableUserSource
 			}
 			rs.close();
 			rs = null;
+			theTransactor.releaseStatement(pStmt);
+			pStmt = null;
+			if(!groupIDs.isEmpty() && stmt == null)
+			{
+				closeAfter = true;
+				stmt = theTransactor.getConnection().createStatement();
+			}
 			for(int g = 0; g < groupIDs.size(); g++)
 			{
 				PrismsApplication app = theApps.get(appNames.get(g));
@@ -1804,6 +1811,8 @@ public class DBUserSource implements ScalableUserSource
 				{
 					log.error("Connection error", e);
 				}
+			if(pStmt != null)
+				theTransactor.releaseStatement(pStmt);
 			if(closeAfter && stmt != null)
 				try
 				{
@@ -22,6 +22,604 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 {
 	static final Logger log = Logger.getLogger(DefaultConnectionFactory.class);
 
+	/**
+	 * Checks whether database connections are still usable. Validation is configured by a
+	 * validation element in a connection's configuration:
+	 * <ul>
+	 * <li>type: The {@link ValidationType} to use. Default is metadata.</li>
+	 * <li>query: The query to run for the query type</li>
+	 * <li>timeout: The longest to wait for the is-valid type. Default is 5s.</li>
+	 * <li>interval: The time between validations of a connection. Default is 10s.</li>
+	 * <li>background: Whether connections are validated periodically on a background thread
+	 * instead of inline when they are used. Default is false.</li>
+	 * </ul>
+	 */
+	static class ConnectionValidator
+	{
+		/** The ways a connection can be validated */
+		static enum ValidationType
+		{
+			/**
+			 * Reads the schemas from the connection's metadata. This positively validates the
+			 * connection, but is a heavyweight dictionary query on some databases.
+			 */
+			metadata,
+			/** Uses the JDBC4 {@link Connection#isValid(int)} method */
+			isValid,
+			/** Runs a configured lightweight query, such as "SELECT 1 FROM DUAL" */
+			query,
+			/** Does not validate connections beyond checking whether they are closed */
+			none;
+
+			static ValidationType byName(String name)
+			{
+				String simple = name.replace("-", "");
+				for(ValidationType type : values())
+					if(type.name().equalsIgnoreCase(simple))
+						return type;
+				throw new IllegalArgumentException("Unrecognized validation type: " + name);
+			}
+		}
+
+		final ValidationType theType;
+
+		final String theQuery;
+
+		final int theTimeout;
+
+		final long theInterval;
+
+		final boolean isBackground;
+
+		ConnectionValidator(PrismsConfig config)
+		{
+			String type = config == null ? null : config.get("type");
+			String query = config == null ? null : config.get("query");
+			if(type != null)
+				theType = ValidationType.byName(type);
+			else if(query != null)
+				theType = ValidationType.query;
+			else
+				theType = ValidationType.metadata;
+			if(theType == ValidationType.query && query == null)
+				throw new IllegalArgumentException("No query configured for query validation");
+			theQuery = query;
+			theTimeout = config == null ? 5 : (int) (config.getTime("timeout", 5000) / 1000);
+			theInterval = config == null ? 10000 : config.getTime("interval", 10000);
+			isBackground = config != null && config.is("background", false);
+		}
+
+		ConnectionValidator(ConnectionValidator base, String query)
+		{
+			theType = ValidationType.query;
+			theQuery = query;
+			theTimeout = base.theTimeout;
+			theInterval = base.theInterval;
+			isBackground = base.isBackground;
+		}
+
+		/**
+		 * @param conn The connection to validate
+		 * @throws SQLException If the connection is not valid
+		 */
+		void validate(Connection conn) throws SQLException
+		{
+			switch(theType)
+			{
+			case metadata:
+				/* Connection.isClosed() only returns true if it has been closed from the client
+				 * side. Connection.isValid() may still return true on some drivers if the database
+				 * can be reached even if the connection object is no longer valid. This positively
+				 * validates the connection. */
+				java.sql.ResultSet rs = conn.getMetaData().getSchemas();
+				try
+				{
+					rs.next();
+				} finally
+				{
+					rs.close();
+				}
+				break;
+			case isValid:
+				boolean valid;
+				try
+				{
+					valid = conn.isValid(theTimeout);
+				} catch(AbstractMethodError e)
+				{ // Pre-JDBC4 driver
+					valid = !conn.isClosed();
+				}
+				if(!valid)
+					throw new SQLException("Connection is not valid");
+				break;
+			case query:
+				Statement stmt = conn.createStatement();
+				try
+				{
+					stmt.executeQuery(theQuery).close();
+				} finally
+				{
+					stmt.close();
+				}
+				break;
+			case none:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Caches prepared statements for a connection by their SQL so that the database does not have to
+	 * parse statements that are used repeatedly. Statements are checked out of the cache while they
+	 * are used, so a statement is never used by two threads at once. The least recently used
+	 * statements are closed when more than the cache's capacity are idle.
+	 */
+	static class StatementCache
+	{
+		private final Connection theConn;
+
+		private final int theCapacity;
+
+		/** Idle statements by SQL, in least-recently-used order */
+		private final java.util.LinkedHashMap<String, java.util.ArrayDeque<java.sql.PreparedStatement>>
+			theIdle;
+
+		/** The SQL of every open statement created by this cache, idle or in use */
+		private final java.util.IdentityHashMap<java.sql.PreparedStatement, String> theSQL;
+
+		private int theIdleCount;
+
+		private long theHits;
+
+		private long theMisses;
+
+		private boolean isClosed;
+
+		StatementCache(Connection conn, int capacity)
+		{
+			theConn = conn;
+			theCapacity = capacity;
+			theIdle = new java.util.LinkedHashMap<String, java.util.ArrayDeque<java.sql.PreparedStatement>>(
+				16, 0.75f, true);
+			theSQL = new java.util.IdentityHashMap<java.sql.PreparedStatement, String>();
+		}
+
+		/**
+		 * @param sql The SQL to get a prepared statement for
+		 * @return An idle cached statement for the SQL, or a new statement if none is idle
+		 * @throws SQLException If the statement cannot be prepared
+		 */
+		java.sql.PreparedStatement get(String sql) throws SQLException
+		{
+			synchronized(this)
+			{
+				java.util.ArrayDeque<java.sql.PreparedStatement> idle = theIdle.get(sql);
+				if(idle != null)
+				{
+					java.sql.PreparedStatement ret = idle.pollFirst();
+					if(idle.isEmpty())
+						theIdle.remove(sql);
+					theIdleCount--;
+					theHits++;
+					return ret;
+				}
+				theMisses++;
+			}
+			java.sql.PreparedStatement ret = theConn.prepareStatement(sql);
+			synchronized(this)
+			{
+				theSQL.put(ret, sql);
+			}
+			return ret;
+		}
+
+		/**
+		 * @param stmt The statement to return to this cache
+		 * @return Whether the statement was created by this cache
+		 */
+		boolean release(java.sql.PreparedStatement stmt)
+		{
+			java.sql.PreparedStatement toClose = null;
+			synchronized(this)
+			{
+				String sql = theSQL.get(stmt);
+				if(sql == null)
+					return false;
+				if(isClosed || theCapacity <= 0)
+				{
+					theSQL.remove(stmt);
+					toClose = stmt;
+				}
+				else
+				{
+					try
+					{
+						stmt.clearParameters();
+					} catch(SQLException e)
+					{
+						theSQL.remove(stmt);
+						toClose = stmt;
+					}
+				}
+				if(toClose == null)
+				{
+					java.util.ArrayDeque<java.sql.PreparedStatement> idle = theIdle.get(sql);
+					if(idle == null)
+					{
+						idle = new java.util.ArrayDeque<java.sql.PreparedStatement>();
+						theIdle.put(sql, idle);
+					}
+					idle.addFirst(stmt);
+					theIdleCount++;
+					if(theIdleCount > theCapacity)
+					{
+						java.util.Map.Entry<String, java.util.ArrayDeque<java.sql.PreparedStatement>> eldest;
+						eldest = theIdle.entrySet().iterator().next();
+						toClose = eldest.getValue().pollLast();
+						if(eldest.getValue().isEmpty())
+							theIdle.remove(eldest.getKey());
+						theIdleCount--;
+						theSQL.remove(toClose);
+					}
+				}
+			}
+			if(toClose != null)
+				close(toClose);
+			return true;
+		}
+
+		/** Closes all idle statements. Statements in use are closed when they are released. */
+		void close()
+		{
+			java.util.ArrayList<java.sql.PreparedStatement> idle;
+			idle = new java.util.ArrayList<java.sql.PreparedStatement>();
+			synchronized(this)
+			{
+				isClosed = true;
+				for(java.util.ArrayDeque<java.sql.PreparedStatement> stmts : theIdle.values())
+					for(java.sql.PreparedStatement stmt : stmts)
+					{
+						theSQL.remove(stmt);
+						idle.add(stmt);
+					}
+				theIdle.clear();
+				theIdleCount = 0;
+			}
+			for(java.sql.PreparedStatement stmt : idle)
+				close(stmt);
+		}
+
+		private static void close(java.sql.PreparedStatement stmt)
+		{
+			try
+			{
+				stmt.close();
+			} catch(SQLException e)
+			{
+				log.error("Could not close cached statement", e);
+			}
+		}
+
+		@Override
+		public synchronized String toString()
+		{
+			return "Statement cache: " + theSQL.size() + " open, " + theIdleCount + " idle, "
+				+ theHits + " hits, " + theMisses + " misses";
+		}
+	}
+
+	/** A connection managed by a {@link ConnectionPool} */
+	static class PooledConnection
+	{
+		final Connection theConn;
+
+		final StatementCache theStatements;
+
+		long theLastUsed;
+
+		PooledConnection(Connection conn, int statementCacheSize)
+		{
+			theConn = conn;
+			theStatements = new StatementCache(conn, statementCacheSize);
+			theLastUsed = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * A pool of connections that a transactor uses to run transactions concurrently. Pooling is
+	 * enabled by a pool element in a connection's configuration:
+	 * <ul>
+	 * <li>min: The number of connections to keep open once they are created. Default is 0.</li>
+	 * <li>max: The maximum number of connections open at once. Default is 8.</li>
+	 * <li>max-wait: The longest to wait for a connection when all are in use. Default is 30s.</li>
+	 * <li>idle-timeout: The time after which an unused connection is closed. Default is 5min.</li>
+	 * <li>validation-query: A query to validate pooled connections with. If missing, the
+	 * connection's {@link ConnectionValidator validation} is used.</li>
+	 * </ul>
+	 * Unless validation is done in the background, a connection that has been idle longer than the
+	 * validation interval is validated before it is borrowed.
+	 * <p>
+	 * Only work done through the transaction's statement or through the transactor's
+	 * getConnection, getPreparedStatement or getDBItem during the transaction is part of the
+	 * transaction. Statements that a component prepared ahead of time from getConnection outside a
+	 * transaction stay on the transactor's shared connection and commit on their own.
+	 * </p>
+	 */
+	class ConnectionPool
+	{
+		private final PrismsConfig theConnConfig;
+
+		private final String theDuplicateID;
+
+		private final int theMinSize;
+
+		private final int theMaxSize;
+
+		private final long theMaxWait;
+
+		private final long theIdleTimeout;
+
+		private final ConnectionValidator theValidator;
+
+		private final java.util.ArrayDeque<PooledConnection> theIdle;
+
+		private int theOpenCount;
+
+		private boolean isClosed;
+
+		private long theBorrowCount;
+
+		private long theWaitCount;
+
+		private long theCreateCount;
+
+		ConnectionPool(PrismsConfig connConfig, PrismsConfig poolConfig, String duplicateID,
+			ConnectionValidator validator)
+		{
+			theConnConfig = connConfig;
+			theDuplicateID = duplicateID;
+			theMinSize = poolConfig.getInt("min", 0);
+			theMaxSize = Math.max(1, poolConfig.getInt("max", 8));
+			theMaxWait = poolConfig.getTime("max-wait", 30000);
+			theIdleTimeout = poolConfig.getTime("idle-timeout", 5L * 60000);
+			String query = poolConfig.get("validation-query");
+			theValidator = query == null ? validator : new ConnectionValidator(validator, query);
+			theIdle = new java.util.ArrayDeque<PooledConnection>();
+		}
+
+		/**
+		 * Gets a connection from this pool, creating one if none is available and the pool is not
+		 * full. The connection must be returned with {@link #release(PooledConnection)}.
+		 */
+		<T extends Throwable> PooledConnection borrow(Thrower<T> thrower) throws T
+		{
+			while(true)
+			{
+				PooledConnection ret = null;
+				java.util.List<PooledConnection> evicted;
+				synchronized(this)
+				{
+					long now = System.currentTimeMillis();
+					long timeout = now + theMaxWait;
+					boolean waited = false;
+					while(true)
+					{
+						if(isClosed)
+							thrower.error("Connection pool for " + theConnConfig.get("name")
+								+ " is closed");
+						if(!theIdle.isEmpty())
+						{
+							ret = theIdle.pollFirst();
+							break;
+						}
+						else if(theOpenCount < theMaxSize)
+						{
+							theOpenCount++;
+							break;
+						}
+						now = System.currentTimeMillis();
+						if(now >= timeout)
+							thrower.error("Timed out waiting " + theMaxWait
+								+ "ms for a connection to " + theConnConfig.get("name"));
+						if(!waited)
+						{
+							waited = true;
+							theWaitCount++;
+						}
+						try
+						{
+							wait(timeout - now);
+						} catch(InterruptedException e)
+						{
+							thrower.error("Interrupted waiting for a connection", e);
+						}
+					}
+					theBorrowCount++;
+					evicted = evictIdle();
+				}
+				close(evicted);
+				if(ret == null)
+				{
+					try
+					{
+						ret = new PooledConnection(DefaultConnectionFactory.this.connect(
+							theConnConfig, theDuplicateID), getStatementCacheSize(theConnConfig));
+					} catch(Exception e)
+					{
+						discarded();
+						thrower.error("Could not create pooled connection!", e);
+					}
+					synchronized(this)
+					{
+						theCreateCount++;
+					}
+					return ret;
+				}
+				if(theValidator.isBackground
+					|| System.currentTimeMillis() - ret.theLastUsed < theValidator.theInterval
+					|| validate(ret))
+					return ret;
+				close(ret);
+				discarded();
+			}
+		}
+
+		/**
+		 * Returns a connection to this pool
+		 * 
+		 * @param conn The connection borrowed from this pool
+		 */
+		void release(PooledConnection conn)
+		{
+			boolean valid;
+			try
+			{
+				valid = !conn.theConn.isClosed();
+			} catch(SQLException e)
+			{
+				valid = false;
+			}
+			java.util.List<PooledConnection> evicted;
+			synchronized(this)
+			{
+				if(valid && !isClosed)
+				{
+					conn.theLastUsed = System.currentTimeMillis();
+					theIdle.addFirst(conn);
+					conn = null;
+				}
+				else
+					theOpenCount--;
+				evicted = evictIdle();
+				notifyAll();
+			}
+			if(conn != null)
+				close(conn);
+			close(evicted);
+		}
+
+		private synchronized void discarded()
+		{
+			theOpenCount--;
+			notifyAll();
+		}
+
+		/** Removes connections that have been idle too long. Must be called under this pool's lock */
+		private java.util.List<PooledConnection> evictIdle()
+		{
+			java.util.List<PooledConnection> ret = null;
+			long now = System.currentTimeMillis();
+			while(theOpenCount > theMinSize && !theIdle.isEmpty()
+				&& now - theIdle.peekLast().theLastUsed > theIdleTimeout)
+			{
+				if(ret == null)
+					ret = new java.util.ArrayList<PooledConnection>();
+				ret.add(theIdle.pollLast());
+				theOpenCount--;
+			}
+			return ret;
+		}
+
+		private boolean validate(PooledConnection conn)
+		{
+			try
+			{
+				theValidator.validate(conn.theConn);
+				return true;
+			} catch(SQLException e)
+			{
+				log.warn("Pooled connection to " + theConnConfig.get("name") + " is invalid", e);
+				return false;
+			}
+		}
+
+		/**
+		 * Validates the idle connections in this pool that have not been used within the validation
+		 * interval, closing those that are invalid. Connections are taken out of the pool while they
+		 * are validated so they are not borrowed at the same time.
+		 */
+		void validateIdle()
+		{
+			java.util.List<PooledConnection> toCheck = null;
+			synchronized(this)
+			{
+				long now = System.currentTimeMillis();
+				java.util.Iterator<PooledConnection> iter = theIdle.iterator();
+				while(iter.hasNext())
+				{
+					PooledConnection conn = iter.next();
+					if(now - conn.theLastUsed < theValidator.theInterval)
+						continue;
+					iter.remove();
+					if(toCheck == null)
+						toCheck = new java.util.ArrayList<PooledConnection>();
+					toCheck.add(conn);
+				}
+			}
+			if(toCheck == null)
+				return;
+			for(PooledConnection conn : toCheck)
+			{
+				if(validate(conn))
+				{
+					synchronized(this)
+					{
+						if(!isClosed)
+						{
+							theIdle.addLast(conn);
+							notifyAll();
+							continue;
+						}
+					}
+				}
+				close(conn);
+				discarded();
+			}
+		}
+
+		private void close(java.util.List<PooledConnection> conns)
+		{
+			if(conns != null)
+				for(PooledConnection conn : conns)
+					close(conn);
+		}
+
+		private void close(PooledConnection conn)
+		{
+			conn.theStatements.close();
+			try
+			{
+				conn.theConn.close();
+			} catch(SQLException e)
+			{
+				log.error("Could not close pooled connection", e);
+			}
+		}
+
+		/** Closes all idle connections and prevents new ones from being borrowed */
+		void close()
+		{
+			java.util.List<PooledConnection> idle;
+			synchronized(this)
+			{
+				isClosed = true;
+				idle = new java.util.ArrayList<PooledConnection>(theIdle);
+				theOpenCount -= theIdle.size();
+				theIdle.clear();
+				notifyAll();
+			}
+			close(idle);
+		}
+
+		@Override
+		public synchronized String toString()
+		{
+			return "Pool " + theConnConfig.get("name") + ": " + theOpenCount + " open, "
+				+ theIdle.size() + " idle, " + theBorrowCount + " borrowed, " + theWaitCount
+				+ " waited, " + theCreateCount + " created";
+		}
+	}
+
 	class DefaultTransactor implements Cloneable
 	{
 		private prisms.arch.PrismsConfig theConnConfig;
@@ -34,20 +632,92 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 
 		private int theConnectionID;
 
-		private long theLastValidCheck;
+		private volatile long theLastValidCheck;
 
 		private String theTablePrefix;
 
 		private prisms.arch.ds.Transactor.ReconnectListener[] theListeners;
 
+		private ConnectionPool thePool;
+
+		private ConnectionValidator theValidator;
+
+		private java.util.concurrent.ScheduledFuture<?> theValidationTask;
+
+		/** Set by background validation when it finds that the connection is no longer valid */
+		private volatile Connection theInvalidConn;
+
+		/** The pooled connection that each thread is running a transaction on */
+		private ThreadLocal<PooledConnection> theBoundConnections;
+
+		/** Caches prepared statements for the shared connection */
+		private volatile StatementCache theStatements;
+
 		DefaultTransactor(prisms.arch.PrismsConfig connEl, String duplicateID)
 		{
 			theConnConfig = connEl;
 			theDuplicateID = duplicateID;
 			theLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
 			theListeners = new ReconnectListener [0];
+			theBoundConnections = new ThreadLocal<PooledConnection>();
+			theValidator = new ConnectionValidator(theConnConfig.subConfig("validation"));
+			thePool = createPool();
+			startValidation();
+		}
+
+		private ConnectionPool createPool()
+		{
+			PrismsConfig poolConfig = theConnConfig.subConfig("pool");
+			if(poolConfig == null || !poolConfig.is("enabled", true))
+				return null;
+			return new ConnectionPool(theConnConfig, poolConfig, theDuplicateID, theValidator);
+		}
+
+		private void startValidation()
+		{
+			if(!theValidator.isBackground
+				|| theValidator.theType == ConnectionValidator.ValidationType.none)
+				return;
+			theValidationTask = getValidationScheduler().scheduleWithFixedDelay(new Runnable()
+			{
+				public void run()
+				{
+					validateInBackground();
+				}
+			}, theValidator.theInterval, theValidator.theInterval,
+				java.util.concurrent.TimeUnit.MILLISECONDS);
 		}
 
+		/**
+		 * Validates this transactor's connections off of the threads that use them. An invalid
+		 * connection is marked so that the next thread to use it reconnects.
+		 */
+		void validateInBackground()
+		{
+			Connection conn = theConn;
+			if(conn != null && conn != theInvalidConn
+				&& System.currentTimeMillis() - theLastValidCheck >= theValidator.theInterval)
+			{
+				try
+				{
+					theValidator.validate(conn);
+					theLastValidCheck = System.currentTimeMillis();
+				} catch(SQLException e)
+				{
+					log.warn("Connection " + theConnConfig.get("name")
+						+ " lost! Reconnecting on next use.", e);
+					theInvalidConn = conn;
+				} catch(RuntimeException e)
+				{
+					log.error("Could not validate connection " + theConnConfig.get("name"), e);
+				}
+			}
+			ConnectionPool pool = thePool;
+			if(pool != null)
+				pool.validateIdle();
+		}
+
+
 		String getDuplicateID()
 		{
 			return theDuplicateID;
@@ -99,11 +769,20 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			ret.theLastValidCheck = 0;
 			ret.theListeners = new ReconnectListener [0];
 			ret.theDuplicateID = Integer.toHexString(ret.hashCode());
+			ret.theBoundConnections = new ThreadLocal<PooledConnection>();
+			ret.theInvalidConn = null;
+			ret.theStatements = null;
+			ret.theValidationTask = null;
+			ret.thePool = ret.createPool();
+			ret.startValidation();
 			return ret;
 		}
 
 		<T extends Throwable> Connection getConnection(Thrower<T> thrower) throws T
 		{
+			PooledConnection bound = theBoundConnections.get();
+			if(bound != null)
+				return bound.theConn;
 			checkConnected(thrower);
 			return theConn;
 		}
@@ -123,22 +802,24 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 						theConn = null;
 						reconnect = true;
 					}
+					if(theConn != null && theConn == theInvalidConn)
+					{
+						// Found invalid by background validation
+						try
+						{
+							theConn.close();
+						} catch(SQLException e)
+						{}
+						theConn = null;
+						reconnect = true;
+					}
 					long now = System.currentTimeMillis();
-					if(theConn != null && now - theLastValidCheck > 10000)
+					if(theConn != null && !theValidator.isBackground
+						&& now - theLastValidCheck > theValidator.theInterval)
 					{
-						/* Here we make a call to the database to make sure we're really still
-						 * connected. Connection.isClosed() only returns true if it has been closed
-						 * from the client side. Connection.isValid() may still return true if the
-						 * database can be reached even if the connection object is no longer valid.
-						 * This is the simplest, least overhead way I can think of to positively
-						 * validate the connection. */
-						java.sql.ResultSet rs = null;
 						try
 						{
-							java.sql.DatabaseMetaData md = theConn.getMetaData();
-							rs = md.getSchemas();
-							rs.next();
-							rs.close();
+							theValidator.validate(theConn);
 						} catch(SQLException e)
 						{
 							log.warn("Connection " + theConnConfig.get("name")
@@ -176,6 +857,10 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 				try
 				{
 					theConn = DefaultConnectionFactory.this.connect(theConnConfig, theDuplicateID);
+					if(theStatements != null)
+						theStatements.close();
+					theStatements = new StatementCache(theConn,
+						getStatementCacheSize(theConnConfig));
 					theTablePrefix = DefaultConnectionFactory.this.getTablePrefix(theConnConfig);
 					theConnectionID = (int) Math.round(Math.random() * Integer.MAX_VALUE);
 					theLastValidCheck = System.currentTimeMillis();
@@ -201,19 +886,48 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			prisms.arch.ds.Transactor.TransactionOperation<? extends T> op, String ifError,
 			Thrower<T> thrower) throws T
 		{
-			Statement stmt = null;
+			PooledConnection bound = theBoundConnections.get();
+			if(bound != null)
+				return performTransaction(bound.theConn, op, ifError, thrower);
+			if(thePool != null)
+			{
+				PooledConnection pooled = thePool.borrow(thrower);
+				theBoundConnections.set(pooled);
+				try
+				{
+					return performTransaction(pooled.theConn, op, ifError, thrower);
+				} finally
+				{
+					theBoundConnections.remove();
+					thePool.release(pooled);
+				}
+			}
 			checkConnected(thrower);
-			boolean oldAutoCommit = true;
-			boolean completed = false;
 			java.util.concurrent.locks.Lock lock = theLock.writeLock();
 			lock.lock();
 			try
+			{
+				return performTransaction(theConn, op, ifError, thrower);
+			} finally
+			{
+				lock.unlock();
+			}
+		}
+
+		private <T extends Throwable> Object performTransaction(Connection conn,
+			prisms.arch.ds.Transactor.TransactionOperation<? extends T> op, String ifError,
+			Thrower<T> thrower) throws T
+		{
+			Statement stmt = null;
+			boolean oldAutoCommit = true;
+			boolean completed = false;
+			try
 			{
 				try
 				{
-					oldAutoCommit = theConn.getAutoCommit();
-					theConn.setAutoCommit(false);
-					stmt = theConn.createStatement();
+					oldAutoCommit = conn.getAutoCommit();
+					conn.setAutoCommit(false);
+					stmt = conn.createStatement();
 				} catch(SQLException e)
 				{
 					thrower.error("Connection error: ", e);
@@ -221,7 +935,7 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 				Object ret = op.run(stmt);
 				try
 				{
-					theConn.commit();
+					conn.commit();
 				} catch(SQLException e)
 				{
 					thrower.error(ifError, e);
@@ -230,42 +944,76 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 				return ret;
 			} finally
 			{
-				try
+				if(!completed)
 				{
-					if(!completed)
+					try
 					{
-						try
-						{
-							theConn.rollback();
-						} catch(SQLException e)
-						{
-							log.error("Transactor could not perform rollback", e);
-						}
-					}
-					if(stmt != null)
+						conn.rollback();
+					} catch(SQLException e)
 					{
-						try
-						{
-							stmt.close();
-						} catch(SQLException e)
-						{
-							log.error("Connection error", e);
-						}
+						log.error("Transactor could not perform rollback", e);
 					}
+				}
+				if(stmt != null)
+				{
 					try
 					{
-						theConn.setAutoCommit(oldAutoCommit);
+						stmt.close();
 					} catch(SQLException e)
 					{
 						log.error("Connection error", e);
 					}
-				} finally
+				}
+				try
+				{
+					conn.setAutoCommit(oldAutoCommit);
+				} catch(SQLException e)
 				{
-					lock.unlock();
+					log.error("Connection error", e);
 				}
 			}
 		}
 
+		<T extends Throwable> java.sql.PreparedStatement getPreparedStatement(String sql,
+			Thrower<T> thrower) throws T
+		{
+			PooledConnection bound = theBoundConnections.get();
+			StatementCache cache;
+			if(bound != null)
+				cache = bound.theStatements;
+			else
+			{
+				checkConnected(thrower);
+				cache = theStatements;
+			}
+			try
+			{
+				return cache.get(sql);
+			} catch(SQLException e)
+			{
+				thrower.error("Could not prepare statement: SQL=" + sql, e);
+				throw new IllegalStateException("Thrower didn't throw an exception!");
+			}
+		}
+
+		void releaseStatement(java.sql.PreparedStatement stmt)
+		{
+			PooledConnection bound = theBoundConnections.get();
+			if(bound != null && bound.theStatements.release(stmt))
+				return;
+			StatementCache cache = theStatements;
+			if(cache != null && cache.release(stmt))
+				return;
+			// From a connection that is no longer current
+			try
+			{
+				stmt.close();
+			} catch(SQLException e)
+			{
+				log.error("Could not close statement", e);
+			}
+		}
+
 		<T extends Throwable, T2> T2 getDBItem(Statement stmt, String sql, Class<T2> type,
 			Thrower<T> thrower) throws T
 		{
@@ -386,6 +1134,18 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			}
 			theConnectionID = 0;
 			theLock = null;
+			if(theValidationTask != null)
+			{
+				theValidationTask.cancel(false);
+				theValidationTask = null;
+			}
+			if(thePool != null)
+				thePool.close();
+			if(theStatements != null)
+			{
+				theStatements.close();
+				theStatements = null;
+			}
 			if(theConn != null)
 			{
 				DefaultConnectionFactory.this.released(theConnConfig, theConn);
@@ -504,6 +1264,18 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			return theDefaultTransactor.performTransaction(op, ifError, theThrower);
 		}
 
+		public java.sql.PreparedStatement getPreparedStatement(String sql) throws T
+		{
+			if(isReleased)
+				theThrower.error("This transactor has been released");
+			return theDefaultTransactor.getPreparedStatement(sql, theThrower);
+		}
+
+		public void releaseStatement(java.sql.PreparedStatement stmt)
+		{
+			theDefaultTransactor.releaseStatement(stmt);
+		}
+
 		public <T2> T2 getDBItem(Statement stmt, String sql, Class<T2> type) throws T
 		{
 			if(isReleased)
@@ -564,6 +1336,8 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 
 	private Map<String, Map<String, DefaultTransactor>> theCoreConnections;
 
+	private java.util.concurrent.ScheduledThreadPoolExecutor theValidationScheduler;
+
 	/** Creates this persister factory */
 	public DefaultConnectionFactory()
 	{
@@ -656,6 +1430,26 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 		return new TransactorImpl<T>(config, trans, thrower);
 	}
 
+	/** @return The scheduler that validates connections in the background */
+	synchronized java.util.concurrent.ScheduledExecutorService getValidationScheduler()
+	{
+		if(theValidationScheduler == null)
+		{
+			theValidationScheduler = new java.util.concurrent.ScheduledThreadPoolExecutor(1,
+				new java.util.concurrent.ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread ret = new Thread(r, "PRISMS Connection Validator");
+						ret.setDaemon(true);
+						return ret;
+					}
+				});
+			theValidationScheduler.setRemoveOnCancelPolicy(true);
+		}
+		return theValidationScheduler;
+	}
+
 	public PrismsConfig getConnectionConfig(PrismsConfig config)
 	{
 		String ref = config.get("ref");
@@ -720,6 +1514,15 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			throw new SQLException("Unrecognized connection configuration type: " + config);
 	}
 
+	/**
+	 * @param connConfig The configuration used to connect to the database
+	 * @return The maximum number of idle prepared statements to cache for each connection
+	 */
+	protected int getStatementCacheSize(PrismsConfig connConfig)
+	{
+		return connConfig.getInt("statement-cache-size", 32);
+	}
+
 	/**
 	 * @param connConfig The configuration used to connect to the database
 	 * @return The prefix that should be appended to all SQL commands before each table name
@@ -771,6 +1574,14 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			conns.clear();
 		}
 		theCoreConnections.clear();
+		synchronized(this)
+		{
+			if(theValidationScheduler != null)
+			{
+				theValidationScheduler.shutdownNow();
+				theValidationScheduler = null;
+			}
+		}
 		theNamedConnEls.clear();
 		isConfigured = false;
 	}
@@ -0,0 +1,533 @@
+/*
+ * ExecutorWorker.java Created Oct 17, 2026
+ */
+package prisms.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import prisms.arch.Worker;
+
+/**
+ * A worker backed by a {@link java.util.concurrent.ThreadPoolExecutor} with a bounded task queue,
+ * or optionally by a virtual-thread-per-task executor on JVMs that support virtual threads. This
+ * worker keeps metrics on its queue depth, rejected tasks and the time tasks spend queued and
+ * running.
+ */
+public class ExecutorWorker implements Worker
+{
+	static final Logger log = Logger.getLogger(ExecutorWorker.class);
+
+	/** The policies this worker may use when its queue is full */
+	public static enum RejectionPolicy
+	{
+		/** Runs the rejected task in the thread that submitted it */
+		callerRuns,
+		/** Throws a {@link java.util.concurrent.RejectedExecutionException} to the submitter */
+		abort,
+		/**
+		 * Logs and discards the rejected task, reporting a
+		 * {@link java.util.concurrent.RejectedExecutionException} to the task's error listener so
+		 * that the submitter can clean up after the task that will never run
+		 */
+		discard;
+	}
+
+	private final String theName;
+
+	private final boolean isVirtual;
+
+	private final java.util.concurrent.ExecutorService theExecutor;
+
+	private final java.util.concurrent.ThreadPoolExecutor thePool;
+
+	private final RejectionPolicy theRejectionPolicy;
+
+	private final AtomicLong theThreadCounter;
+
+	private final AtomicLong theSubmitted;
+
+	private final AtomicLong theCompleted;
+
+	private final AtomicLong theRejected;
+
+	private final AtomicLong theTotalWait;
+
+	private final AtomicLong theMaxWait;
+
+	private final AtomicLong theTotalRun;
+
+	private final AtomicLong theMaxRun;
+
+	private final java.util.concurrent.ConcurrentHashMap<WorkerTask, Boolean> theRunningTasks;
+
+	private final AtomicLong theLongBlocked;
+
+	private volatile long theBlockedThreshold;
+
+	private Thread theBlockedMonitor;
+
+	private volatile boolean isClosed;
+
+	/**
+	 * Creates an executor worker with the same default maximum thread count as
+	 * {@link ThreadPoolWorker}, a queue of 1000 tasks and the caller-runs rejection policy
+	 *
+	 * @param name The name for this worker
+	 */
+	public ExecutorWorker(String name)
+	{
+		this(name, Runtime.getRuntime().availableProcessors() * 2, 1000, RejectionPolicy.callerRuns);
+	}
+
+	/**
+	 * Creates an executor worker backed by a bounded thread pool
+	 *
+	 * @param name The name for this worker
+	 * @param threads The max thread count. Interpreted as in
+	 *        {@link ThreadPoolWorker#setMaxThreadCount(int)}
+	 * @param queueSize The maximum number of tasks that may be queued waiting for a thread
+	 * @param policy The policy to use when a task is submitted while the queue is full
+	 */
+	public ExecutorWorker(String name, int threads, int queueSize, RejectionPolicy policy)
+	{
+		this(name, false, threads, queueSize, policy);
+	}
+
+	private ExecutorWorker(String name, boolean virtual, int threads, int queueSize,
+		RejectionPolicy policy)
+	{
+		theName = name;
+		theRejectionPolicy = policy;
+		theThreadCounter = new AtomicLong();
+		theSubmitted = new AtomicLong();
+		theCompleted = new AtomicLong();
+		theRejected = new AtomicLong();
+		theTotalWait = new AtomicLong();
+		theMaxWait = new AtomicLong();
+		theTotalRun = new AtomicLong();
+		theMaxRun = new AtomicLong();
+		theRunningTasks = new java.util.concurrent.ConcurrentHashMap<WorkerTask, Boolean>();
+		theLongBlocked = new AtomicLong();
+		java.util.concurrent.ThreadFactory virtualFactory = null;
+		if(virtual)
+		{
+			virtualFactory = getVirtualThreadFactory(name);
+			if(virtualFactory == null)
+				log.warn("Virtual threads are not supported by this JVM ("
+					+ System.getProperty("java.version") + "). Worker " + name
+					+ " will use a thread pool.");
+		}
+		if(virtualFactory != null)
+		{
+			isVirtual = true;
+			thePool = null;
+			theExecutor = newThreadPerTaskExecutor(virtualFactory);
+		}
+		else
+		{
+			isVirtual = false;
+			if(threads <= 0)
+				threads += Runtime.getRuntime().availableProcessors();
+			if(threads <= 0)
+				threads = 1;
+			if(queueSize <= 0)
+				queueSize = 1;
+			thePool = new java.util.concurrent.ThreadPoolExecutor(threads, threads, 60,
+				java.util.concurrent.TimeUnit.SECONDS,
+				new java.util.concurrent.ArrayBlockingQueue<Runnable>(queueSize),
+				new java.util.concurrent.ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						return new Thread(r, theName + " #" + theThreadCounter.incrementAndGet());
+					}
+				}, new java.util.concurrent.RejectedExecutionHandler()
+				{
+					public void rejectedExecution(Runnable r,
+						java.util.concurrent.ThreadPoolExecutor executor)
+					{
+						rejected(r, executor);
+					}
+				});
+			thePool.allowCoreThreadTimeOut(true);
+			theExecutor = thePool;
+		}
+	}
+
+	/**
+	 * Creates a worker that runs each task in its own virtual thread. If the JVM does not support
+	 * virtual threads, a warning is logged and a worker backed by a default thread pool is returned.
+	 *
+	 * @param name The name for the worker
+	 * @return The new worker
+	 */
+	public static ExecutorWorker createVirtual(String name)
+	{
+		return new ExecutorWorker(name, true, Runtime.getRuntime().availableProcessors() * 2, 1000,
+			RejectionPolicy.callerRuns);
+	}
+
+	/**
+	 * Creates a factory for virtual threads. Virtual threads are accessed reflectively so that this
+	 * class may be compiled and run on JVMs that do not support them.
+	 *
+	 * @param name The name prefix for the threads that the factory creates
+	 * @return The virtual thread factory, or null if this JVM does not support virtual threads
+	 */
+	public static java.util.concurrent.ThreadFactory getVirtualThreadFactory(String name)
+	{
+		try
+		{
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder,
+				name + " #", Long.valueOf(1));
+			return (java.util.concurrent.ThreadFactory) builderType.getMethod("factory").invoke(
+				builder);
+		} catch(NoSuchMethodException e)
+		{
+			return null;
+		} catch(ClassNotFoundException e)
+		{
+			return null;
+		} catch(Exception e)
+		{ // Virtual threads may be a preview feature that is not enabled
+			log.debug("Could not create virtual thread factory", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Turns on the JVM's own diagnostics for virtual threads that block while pinned to their
+	 * carrier thread (e.g. inside a synchronized block). The JVM prints the stack trace of the
+	 * pinned thread to standard output. This must be called before the first virtual thread is
+	 * created to have any effect, and it has no effect on JVMs that do not pin virtual threads on
+	 * monitors.
+	 */
+	public static void traceJvmPinning()
+	{
+		if(System.getProperty("jdk.tracePinnedThreads") == null)
+			System.setProperty("jdk.tracePinnedThreads", "short");
+	}
+
+	private static java.util.concurrent.ExecutorService newThreadPerTaskExecutor(
+		java.util.concurrent.ThreadFactory factory)
+	{
+		try
+		{
+			return (java.util.concurrent.ExecutorService) java.util.concurrent.Executors.class
+				.getMethod("newThreadPerTaskExecutor", java.util.concurrent.ThreadFactory.class)
+				.invoke(null, factory);
+		} catch(Exception e)
+		{
+			throw new IllegalStateException("Could not create thread-per-task executor", e);
+		}
+	}
+
+	/** @return This worker's name */
+	public String getName()
+	{
+		return theName;
+	}
+
+	/** @return Whether this worker runs its tasks in virtual threads */
+	public boolean isVirtual()
+	{
+		return isVirtual;
+	}
+
+	/**
+	 * @return The time (in milliseconds) that a task may run in a virtual thread before it is
+	 *         reported if it is blocked or waiting, or 0 if the long-blocked task report is off
+	 */
+	public long getBlockedThreshold()
+	{
+		return theBlockedThreshold;
+	}
+
+	/**
+	 * Turns on the long-blocked task report for this worker. Tasks that have run longer than the
+	 * threshold in a virtual thread and are blocked or waiting (e.g. on a slow JDBC call or a lock)
+	 * are logged with their stack traces. A parked virtual thread is unmounted from its carrier, so
+	 * this is not a pinning report. Use {@link #traceJvmPinning()} for that. This method has no
+	 * effect unless this worker uses virtual threads.
+	 *
+	 * @param threshold The time (in milliseconds) after which a blocked task is reported, or 0 to
+	 *        turn the report off
+	 */
+	public synchronized void setBlockedThreshold(long threshold)
+	{
+		if(!isVirtual)
+			return;
+		theBlockedThreshold = threshold;
+		if(threshold > 0 && theBlockedMonitor == null)
+		{
+			theBlockedMonitor = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					while(!isClosed)
+					{
+						long thresh = theBlockedThreshold;
+						if(thresh <= 0)
+							thresh = 1000;
+						try
+						{
+							Thread.sleep(thresh < 200 ? 100 : thresh / 2);
+						} catch(InterruptedException e)
+						{}
+						checkBlocked();
+					}
+				}
+			}, theName + " Blocked Task Monitor");
+			theBlockedMonitor.setDaemon(true);
+			theBlockedMonitor.start();
+		}
+	}
+
+	/** @return The number of tasks that have been reported as blocked for a long time */
+	public long getLongBlockedCount()
+	{
+		return theLongBlocked.get();
+	}
+
+	void checkBlocked()
+	{
+		long thresh = theBlockedThreshold;
+		if(thresh <= 0)
+			return;
+		long now = System.nanoTime();
+		for(WorkerTask task : theRunningTasks.keySet())
+		{
+			Thread thread = task.theThread;
+			if(task.isReported || thread == null || (now - task.theStartTime) / 1000000 < thresh)
+				continue;
+			Thread.State state = thread.getState();
+			if(state != Thread.State.BLOCKED && state != Thread.State.WAITING
+				&& state != Thread.State.TIMED_WAITING)
+				continue;
+			task.isReported = true;
+			theLongBlocked.incrementAndGet();
+			Exception trace = new Exception("Stack trace of " + thread.getName());
+			trace.setStackTrace(thread.getStackTrace());
+			log.warn("Virtual thread task " + task.theTask + " has run for "
+				+ (now - task.theStartTime) / 1000000 + "ms and is " + state, trace);
+		}
+	}
+
+	/** @return The policy this worker uses when its queue is full */
+	public RejectionPolicy getRejectionPolicy()
+	{
+		return theRejectionPolicy;
+	}
+
+	public void run(Runnable r, ErrorListener listener)
+	{
+		if(isClosed)
+			throw new IllegalStateException("This worker is closed--no new tasks will be accepted");
+		theSubmitted.incrementAndGet();
+		theExecutor.execute(new WorkerTask(r, listener));
+	}
+
+	void rejected(Runnable r, java.util.concurrent.ThreadPoolExecutor executor)
+	{
+		theRejected.incrementAndGet();
+		if(executor.isShutdown())
+			throw new java.util.concurrent.RejectedExecutionException("Worker " + theName
+				+ " is closed");
+		switch(theRejectionPolicy)
+		{
+		case callerRuns:
+			r.run();
+			break;
+		case abort:
+			throw new java.util.concurrent.RejectedExecutionException("Worker " + theName
+				+ " is saturated: " + executor.getQueue().size() + " tasks queued");
+		case discard:
+			WorkerTask task = (WorkerTask) r;
+			log.warn("Worker " + theName + " is saturated: discarding task " + task.theTask);
+			try
+			{
+				task.theListener.runtime(new java.util.concurrent.RejectedExecutionException(
+					"Worker " + theName + " is saturated: task discarded"));
+			} catch(Throwable e)
+			{
+				log.error("Error listener threw exception: ", e);
+			}
+			break;
+		}
+	}
+
+	private class WorkerTask implements Runnable
+	{
+		final Runnable theTask;
+
+		final ErrorListener theListener;
+
+		private final long theSubmitTime;
+
+		volatile Thread theThread;
+
+		volatile long theStartTime;
+
+		volatile boolean isReported;
+
+		WorkerTask(Runnable task, ErrorListener listener)
+		{
+			theTask = task;
+			theListener = listener;
+			theSubmitTime = System.nanoTime();
+		}
+
+		public void run()
+		{
+			long start = System.nanoTime();
+			if(theBlockedThreshold > 0)
+			{
+				theStartTime = start;
+				theThread = Thread.currentThread();
+				theRunningTasks.put(this, Boolean.TRUE);
+			}
+			try
+			{
+				try
+				{
+					theTask.run();
+				} catch(prisms.util.CancelException e)
+				{
+					log.info(e.getMessage(), e);
+				} catch(Error e)
+				{
+					theListener.error(e);
+				} catch(RuntimeException e)
+				{
+					theListener.runtime(e);
+				}
+			} catch(Throwable e)
+			{
+				log.error("Error listener threw exception: ", e);
+			} finally
+			{
+				if(theThread != null)
+					theRunningTasks.remove(this);
+				long end = System.nanoTime();
+				record(start - theSubmitTime, end - start);
+			}
+		}
+	}
+
+	void record(long wait, long run)
+	{
+		theCompleted.incrementAndGet();
+		theTotalWait.addAndGet(wait);
+		theTotalRun.addAndGet(run);
+		long max = theMaxWait.get();
+		while(wait > max && !theMaxWait.compareAndSet(max, wait))
+			max = theMaxWait.get();
+		max = theMaxRun.get();
+		while(run > max && !theMaxRun.compareAndSet(max, run))
+			max = theMaxRun.get();
+	}
+
+	public int getMaxThreadCount()
+	{
+		return isVirtual ? Integer.MAX_VALUE : thePool.getMaximumPoolSize();
+	}
+
+	/** @return The number of threads currently executing tasks for this worker */
+	public int getActiveThreadCount()
+	{
+		if(isVirtual)
+			return (int) (theSubmitted.get() - theCompleted.get() - theRejected.get());
+		return thePool.getActiveCount();
+	}
+
+	/**
+	 * @return The number of tasks that have been queued in this worker but are not currently being
+	 *         executed
+	 */
+	public int getQueuedTaskCount()
+	{
+		return isVirtual ? 0 : thePool.getQueue().size();
+	}
+
+	/** @return The total number of tasks that have been submitted to this worker */
+	public long getSubmittedTaskCount()
+	{
+		return theSubmitted.get();
+	}
+
+	/** @return The total number of tasks that this worker has finished executing */
+	public long getCompletedTaskCount()
+	{
+		return theCompleted.get();
+	}
+
+	/** @return The number of tasks that were submitted while this worker's queue was full */
+	public long getRejectedTaskCount()
+	{
+		return theRejected.get();
+	}
+
+	/** @return The average time, in milliseconds, that tasks have waited in the queue */
+	public float getAverageWaitTime()
+	{
+		long completed = theCompleted.get();
+		return completed == 0 ? 0 : theTotalWait.get() / 1000000f / completed;
+	}
+
+	/** @return The longest time, in milliseconds, that a task has waited in the queue */
+	public float getMaxWaitTime()
+	{
+		return theMaxWait.get() / 1000000f;
+	}
+
+	/** @return The average time, in milliseconds, that tasks have taken to execute */
+	public float getAverageRunTime()
+	{
+		long completed = theCompleted.get();
+		return completed == 0 ? 0 : theTotalRun.get() / 1000000f / completed;
+	}
+
+	/** @return The longest time, in milliseconds, that a task has taken to execute */
+	public float getMaxRunTime()
+	{
+		return theMaxRun.get() / 1000000f;
+	}
+
+	/** @return Whether this worker has been closed */
+	public boolean isClosed()
+	{
+		return isClosed;
+	}
+
+	public void close()
+	{
+		isClosed = true;
+		theExecutor.shutdown();
+	}
+
+	public void closeNow()
+	{
+		isClosed = true;
+		if(thePool != null)
+			thePool.getQueue().clear();
+		theExecutor.shutdown();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder(theName);
+		ret.append(isVirtual ? " (virtual)" : " (pool)");
+		ret.append(": ").append(getActiveThreadCount()).append(" active, ");
+		ret.append(getQueuedTaskCount()).append(" queued, ");
+		ret.append(theCompleted.get()).append(" completed, ");
+		ret.append(theRejected.get()).append(" rejected; avg wait ");
+		ret.append(getAverageWaitTime()).append("ms, avg run ").append(getAverageRunTime());
+		ret.append("ms");
+		return ret.toString();
+	}
+}
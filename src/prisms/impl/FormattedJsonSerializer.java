@@ -13,4 +13,14 @@ public class FormattedJsonSerializer extends prisms.arch.JsonSerializer
 		validate(events);
 		return org.qommons.JsonUtils.format(events);
 	}
+
+	@Override
+	public void serialize(org.json.simple.JSONArray events, java.io.Writer out,
+		boolean encodeUnicode) throws java.io.NotSerializableException, java.io.IOException
+	{
+		String str = serialize(events);
+		if(encodeUnicode)
+			str = org.qommons.QommonsUtils.encodeUnicode(str);
+		out.write(str);
+	}
 }
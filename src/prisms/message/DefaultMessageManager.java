@@ -436,24 +436,6 @@ public class DefaultMessageManager implements MessageManager
 
 	private DemandCache<Long, Message> theMessageCache;
 
-	private java.util.ArrayList<PreparedStatement> thePStatements;
-
-	private PreparedStatement theContentGetter;
-
-	private PreparedStatement theReceiptGetter;
-
-	private PreparedStatement theAttachGetter;
-
-	private PreparedStatement theActionInserter;
-
-	private PreparedStatement theActionUpdater;
-
-	private PreparedStatement theContentInserter;
-
-	private PreparedStatement theContentDeleter;
-
-	private PreparedStatement theContentUpdater;
-
 	/**
 	 * Creates a message manager
 	 * 
@@ -467,7 +449,6 @@ public class DefaultMessageManager implements MessageManager
 	{
 		theNamespace = namespace;
 		theEnv = env;
-		thePStatements = new java.util.ArrayList<PreparedStatement>();
 		theTransactor = theEnv.getConnectionFactory().getConnection(connEl, null,
 			new prisms.arch.ds.Transactor.Thrower<PrismsMessageException>()
 			{
@@ -483,28 +464,6 @@ public class DefaultMessageManager implements MessageManager
 					throw new PrismsMessageException(message, cause);
 				}
 			});
-		theTransactor.addReconnectListener(new prisms.arch.ds.Transactor.ReconnectListener()
-		{
-			@Override
-			public void reconnected(boolean initial)
-			{
-				if(initial)
-					return;
-				closePStatements();
-				try
-				{
-					createPStatements();
-				} catch(PrismsMessageException e)
-				{
-					log.error("Could not close statements", e);
-				}
-			}
-
-			@Override
-			public void released()
-			{
-			}
-		});
 		theRecordKeeper = recordKeeper;
 		theViewAPI = new ViewAPI();
 		theMessageCache = new DemandCache<Long, Message>(new DemandCache.Qualitizer<Long, Message>()
@@ -523,76 +482,40 @@ public class DefaultMessageManager implements MessageManager
 		}, 250, 4L * 60 * 1000);
 	}
 
-	void closePStatements()
+	/* The statements below are prepared through the transactor so that within a transaction they run on the
+	 * transaction's connection */
+
+	private String getActionInsertSQL()
 	{
-		for(PreparedStatement pStmt : thePStatements)
-			try
-			{
-				pStmt.close();
-			} catch(SQLException e)
-			{
-				log.error("Connection error", e);
-			} catch(Error e)
-			{
-				// Keep getting these from an HSQL bug--silence
-				if(!e.getMessage().contains("compilation"))
-					log.error("Error", e);
-			}
-		thePStatements.clear();
+		return "INSERT INTO " + theTransactor.getTablePrefix() + "prisms_message_action ("
+			+ "messageNS, id, actionMessage, actionContent, actionCompleted, deleted) VALUES ("
+			+ toSQL(theNamespace) + ", ?, ?, ?, ?, ?)";
 	}
 
-	void createPStatements() throws PrismsMessageException
+	private String getActionUpdateSQL()
 	{
-		String sql = null;
-		try
-		{
-			sql = "SELECT content FROM " + theTransactor.getTablePrefix() + "prisms_message_content WHERE messageNS="
-				+ toSQL(theNamespace) + " AND message=? AND contentType=? ORDER BY indexNum";
-			theContentGetter = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theContentGetter);
+		return "UPDATE " + theTransactor.getTablePrefix() + "prisms_message_action"
+			+ " SET actionContent=? WHERE messageNS=" + toSQL(theNamespace) + " AND id=?";
+	}
 
-			sql = "SELECT * FROM " + theTransactor.getTablePrefix() + "prisms_message_recipient" + " WHERE messageNS="
-				+ toSQL(theNamespace) + " AND (deleted=" + boolToSql(false) + " OR deleted='?') ORDER BY rcptMessage";
-			theReceiptGetter = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theReceiptGetter);
-
-			sql = "SELECT id, attName, attType, attLength, attCrc, deleted FROM " + theTransactor.getTablePrefix()
-				+ "prisms_message_attachment WHERE messageNS=" + toSQL(theNamespace)
-				+ " AND attMessage=? AND (deleted=" + boolToSql(false) + " OR deleted='?')";
-			theAttachGetter = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theAttachGetter);
-
-			sql = "INSERT INTO " + theTransactor.getTablePrefix() + "prisms_message_action ("
-				+ "messageNS, id, actionMessage, actionContent, actionCompleted, deleted) VALUES ("
-				+ toSQL(theNamespace) + ", ?, ?, ?, ?, ?)";
-			theActionInserter = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theActionInserter);
-
-			sql = "UPDATE " + theTransactor.getTablePrefix() + "prisms_message_action"
-				+ " SET actionContent=? WHERE messageNS=" + toSQL(theNamespace) + " AND id=?";
-			theActionUpdater = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theActionUpdater);
-
-			sql = "INSERT INTO " + theTransactor.getTablePrefix() + "prisms_message_content"
-				+ " (messageNS, message, contentType, indexNum, content) VALUES (" + toSQL(theNamespace)
-				+ ", ?, ?, ?, ?)";
-			theContentInserter = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theContentInserter);
-
-			sql = "DELETE FROM " + theTransactor.getTablePrefix() + "prisms_message_content WHERE" + " messageNS="
-				+ toSQL(theNamespace) + " AND message=? AND contentType=?" + " AND indexNum>=?";
-			theContentDeleter = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theContentDeleter);
-
-			sql = "UPDATE " + theTransactor.getTablePrefix() + "prisms_message_content"
-				+ " SET content=? WHERE messageNS=" + toSQL(theNamespace) + " AND message=?"
-				+ " AND contentType=? AND indexNum=?";
-			theContentUpdater = theTransactor.getConnection().prepareStatement(sql);
-			thePStatements.add(theContentUpdater);
-		} catch(SQLException e)
-		{
-			throw new PrismsMessageException("Could not prepare statements for messaging: SQL=" + sql, e);
-		}
+	private String getContentInsertSQL()
+	{
+		return "INSERT INTO " + theTransactor.getTablePrefix() + "prisms_message_content"
+			+ " (messageNS, message, contentType, indexNum, content) VALUES (" + toSQL(theNamespace)
+			+ ", ?, ?, ?, ?)";
+	}
+
+	private String getContentDeleteSQL()
+	{
+		return "DELETE FROM " + theTransactor.getTablePrefix() + "prisms_message_content WHERE" + " messageNS="
+			+ toSQL(theNamespace) + " AND message=? AND contentType=?" + " AND indexNum>=?";
+	}
+
+	private String getContentUpdateSQL()
+	{
+		return "UPDATE " + theTransactor.getTablePrefix() + "prisms_message_content"
+			+ " SET content=? WHERE messageNS=" + toSQL(theNamespace) + " AND message=?"
+			+ " AND contentType=? AND indexNum=?";
 	}
 
 	@Override
@@ -1052,38 +975,42 @@ public class DefaultMessageManager implements MessageManager
 	@Override
 	public String getContent(Message msg, int length) throws PrismsMessageException
 	{
-		synchronized(theContentGetter)
+		String sql = "SELECT content, indexNum FROM " + theTransactor.getTablePrefix()
+			+ "prisms_message_content WHERE messageNS=" + toSQL(theNamespace)
+			+ " AND message=? AND contentType=? ORDER BY indexNum";
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		StringBuilder ret = new StringBuilder();
+		try
 		{
-			ResultSet rs = null;
-			StringBuilder ret = new StringBuilder();
-			try
+			pStmt = theTransactor.getPreparedStatement(sql);
+			pStmt.setLong(1, msg.getID());
+			pStmt.setString(2, "C");
+			rs = pStmt.executeQuery();
+			while(rs.next() && ret.length() < length)
 			{
-				theContentGetter.setLong(1, msg.getID());
-				theContentGetter.setString(2, "C");
-				rs = theContentGetter.executeQuery();
-				while(rs.next() && ret.length() < length)
+				if(ret.length() == 0)
+					ret.append(rs.getString("content"));
+				else
+					ret.append(rs.getString("content").substring(ret.length() - rs.getInt("indexNum")));
+			}
+		} catch(SQLException e)
+		{
+			throw new PrismsMessageException("Could not get message content", e);
+		} finally
+		{
+			if(rs != null)
+				try
 				{
-					if(ret.length() == 0)
-						ret.append(rs.getString("content"));
-					else
-						ret.append(rs.getString("content").substring(ret.length() - rs.getInt("indexNum")));
+					rs.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
 				}
-			} catch(SQLException e)
-			{
-				throw new PrismsMessageException("Could not get message content", e);
-			} finally
-			{
-				if(rs != null)
-					try
-					{
-						rs.close();
-					} catch(SQLException e)
-					{
-						log.error("Connection error", e);
-					}
-			}
-			return QommonsUtils.decodeUnicode(ret.toString());
+			if(pStmt != null)
+				theTransactor.releaseStatement(pStmt);
 		}
+		return QommonsUtils.decodeUnicode(ret.toString());
 	}
 
 	private static class BlobInputStream extends java.io.InputStream
@@ -1915,23 +1842,24 @@ public class DefaultMessageManager implements MessageManager
 			{
 				throw new PrismsMessageException("Could not generate new action ID", e);
 			}
-		synchronized(theActionInserter)
+		PreparedStatement pStmt = theTransactor.getPreparedStatement(getActionInsertSQL());
+		try
 		{
-			try
-			{
-				theActionInserter.setLong(1, action.getID());
-				theActionInserter.setLong(2, action.getMessage().getID());
-				DBUtils.setClob(theActionInserter, 3, new java.io.StringReader(action.getDescrip()));
-				if(action.getCompletedUser() != null)
-					theActionInserter.setLong(4, action.getCompletedUser().getID());
-				else
-					theActionInserter.setNull(4, java.sql.Types.NUMERIC);
-				theActionInserter.setString(5, action.isDeleted() ? "t" : "f");
-				theActionInserter.executeUpdate();
-			} catch(SQLException e)
-			{
-				throw new PrismsMessageException("Could not insert action", e);
-			}
+			pStmt.setLong(1, action.getID());
+			pStmt.setLong(2, action.getMessage().getID());
+			DBUtils.setClob(pStmt, 3, new java.io.StringReader(action.getDescrip()));
+			if(action.getCompletedUser() != null)
+				pStmt.setLong(4, action.getCompletedUser().getID());
+			else
+				pStmt.setNull(4, java.sql.Types.NUMERIC);
+			pStmt.setString(5, action.isDeleted() ? "t" : "f");
+			pStmt.executeUpdate();
+		} catch(SQLException e)
+		{
+			throw new PrismsMessageException("Could not insert action", e);
+		} finally
+		{
+			theTransactor.releaseStatement(pStmt);
 		}
 	}
 
@@ -1942,41 +1870,42 @@ public class DefaultMessageManager implements MessageManager
 			content = message.getSubject();
 		else
 			content = message.getContent(-1);
+		PreparedStatement pStmt = theTransactor.getPreparedStatement(getContentInsertSQL());
 		try
 		{
-			synchronized(theContentInserter)
+			pStmt.setLong(1, message.getID());
+			pStmt.setString(2, type);
+			if(content.length() <= CONTENT_LENGTH)
 			{
-				theContentInserter.setLong(1, message.getID());
-				theContentInserter.setString(2, type);
-				if(content.length() <= CONTENT_LENGTH)
-				{
-					theContentInserter.setInt(2, 0);
-					theContentInserter.setString(4, content);
-					theContentInserter.executeUpdate();
-				}
-				else
+				pStmt.setInt(3, 0);
+				pStmt.setString(4, content);
+				pStmt.executeUpdate();
+			}
+			else
+			{
+				int inc = CONTENT_LENGTH - CONTENT_OVERLAP;
+				for(int i = 0; i < content.length(); i += inc)
 				{
-					int inc = CONTENT_LENGTH - CONTENT_OVERLAP;
-					for(int i = 0; i < content.length(); i += inc)
+					int end = i + CONTENT_LENGTH;
+					int diff = end - content.length();
+					if(diff > 0)
 					{
-						int end = i + CONTENT_LENGTH;
-						int diff = end - content.length();
-						if(diff > 0)
-						{
-							end = content.length();
-							i -= diff;
-						}
-						theContentInserter.setInt(2, i);
-						theContentInserter.setString(3, content.substring(i, end));
-						theContentInserter.executeUpdate();
-						if(diff >= 0)
-							break;
+						end = content.length();
+						i -= diff;
 					}
+					pStmt.setInt(3, i);
+					pStmt.setString(4, content.substring(i, end));
+					pStmt.executeUpdate();
+					if(diff >= 0)
+						break;
 				}
 			}
 		} catch(SQLException e)
 		{
 			throw new PrismsMessageException("Could not insert message content", e);
+		} finally
+		{
+			theTransactor.releaseStatement(pStmt);
 		}
 	}
 
@@ -2003,50 +1932,53 @@ public class DefaultMessageManager implements MessageManager
 			int end = startIdx + CONTENT_LENGTH;
 			if(end > content.length())
 				end = content.length();
-			synchronized(theContentUpdater)
+			PreparedStatement pStmt = theTransactor.getPreparedStatement(getContentUpdateSQL());
+			try
 			{
-				try
-				{
-					theContentUpdater.setString(1, content.substring(startIdx, end));
-					theContentUpdater.setLong(2, messageID);
-					theContentUpdater.setString(3, contentType);
-					theContentUpdater.setInt(4, startIdx);
-					if(theContentUpdater.executeUpdate() == 0)
-						throw new PrismsMessageException("Content updating failed");
-				} catch(SQLException e)
-				{
-					throw new PrismsMessageException("Could not update content", e);
-				}
+				pStmt.setString(1, content.substring(startIdx, end));
+				pStmt.setLong(2, messageID);
+				pStmt.setString(3, contentType);
+				pStmt.setInt(4, startIdx);
+				if(pStmt.executeUpdate() == 0)
+					throw new PrismsMessageException("Content updating failed");
+			} catch(SQLException e)
+			{
+				throw new PrismsMessageException("Could not update content", e);
+			} finally
+			{
+				theTransactor.releaseStatement(pStmt);
 			}
 			startIdx += CONTENT_LENGTH - CONTENT_OVERLAP;
 		}
 		if(startIdx < dbContent.length())
 		{ // There are more entries of old content that need to be removed
-			synchronized(theContentDeleter)
+			PreparedStatement pStmt = theTransactor.getPreparedStatement(getContentDeleteSQL());
+			try
 			{
-				try
-				{
-					theContentDeleter.setLong(1, messageID);
-					theContentDeleter.setString(2, contentType);
-					theContentDeleter.setInt(3, startIdx);
-					theContentDeleter.executeUpdate();
-				} catch(SQLException e)
-				{
-					throw new PrismsMessageException("Could not update content", e);
-				}
+				pStmt.setLong(1, messageID);
+				pStmt.setString(2, contentType);
+				pStmt.setInt(3, startIdx);
+				pStmt.executeUpdate();
+			} catch(SQLException e)
+			{
+				throw new PrismsMessageException("Could not update content", e);
+			} finally
+			{
+				theTransactor.releaseStatement(pStmt);
 			}
 		}
 		if(startIdx < content.length())
 		{ // New entries need to be added
-			synchronized(theContentInserter)
+			PreparedStatement pStmt = theTransactor.getPreparedStatement(getContentInsertSQL());
+			try
 			{
 				while(startIdx < content.length())
 				{
 					try
 					{
-						theContentInserter.setLong(1, messageID);
-						theContentInserter.setString(2, contentType);
-						theContentInserter.setInt(3, startIdx);
+						pStmt.setLong(1, messageID);
+						pStmt.setString(2, contentType);
+						pStmt.setInt(3, startIdx);
 						int end = startIdx + CONTENT_LENGTH - CONTENT_OVERLAP;
 						int diff = end - content.length();
 						if(diff > 0)
@@ -2054,13 +1986,16 @@ public class DefaultMessageManager implements MessageManager
 							end = content.length();
 							startIdx -= diff;
 						}
-						theContentInserter.setString(4, content.substring(startIdx, end));
-						theContentInserter.executeUpdate();
+						pStmt.setString(4, content.substring(startIdx, end));
+						pStmt.executeUpdate();
 					} catch(SQLException e)
 					{
 						throw new PrismsMessageException("Could not update content", e);
 					}
 				}
+			} finally
+			{
+				theTransactor.releaseStatement(pStmt);
 			}
 		}
 	}
@@ -2111,19 +2046,22 @@ public class DefaultMessageManager implements MessageManager
 			else
 			{
 				if(dbSubject.length() > 100)
-					synchronized(theContentDeleter)
+				{
+					PreparedStatement pStmt = theTransactor.getPreparedStatement(getContentDeleteSQL());
+					try
 					{
-						try
-						{
-							theContentDeleter.setLong(1, dbMessage.getID());
-							theContentDeleter.setString(2, "S");
-							theContentDeleter.setInt(3, 0);
-							theContentDeleter.executeUpdate();
-						} catch(SQLException e)
-						{
-							throw new PrismsMessageException("Could not update subject of message " + message, e);
-						}
+						pStmt.setLong(1, dbMessage.getID());
+						pStmt.setString(2, "S");
+						pStmt.setInt(3, 0);
+						pStmt.executeUpdate();
+					} catch(SQLException e)
+					{
+						throw new PrismsMessageException("Could not update subject of message " + message, e);
+					} finally
+					{
+						theTransactor.releaseStatement(pStmt);
 					}
+				}
 				if(subject.length() > 100)
 				{
 					sql += "subject=NULL, ";
@@ -2603,18 +2541,19 @@ public class DefaultMessageManager implements MessageManager
 		}
 		if(!dbAction.getDescrip().equals(action.getDescrip()))
 		{
-			synchronized(theActionUpdater)
+			PreparedStatement pStmt = theTransactor.getPreparedStatement(getActionUpdateSQL());
+			try
 			{
-				try
-				{
-					DBUtils.setClob(theActionInserter, 1, new java.io.StringReader(action.getDescrip()));
-					theActionUpdater.setLong(2, dbAction.getID());
-					theActionUpdater.executeUpdate();
-				} catch(SQLException e)
-				{
-					throw new PrismsMessageException("Could not update action " + dbAction.getID() + " of message "
-						+ dbAction.getMessage(), e);
-				}
+				DBUtils.setClob(pStmt, 1, new java.io.StringReader(action.getDescrip()));
+				pStmt.setLong(2, dbAction.getID());
+				pStmt.executeUpdate();
+			} catch(SQLException e)
+			{
+				throw new PrismsMessageException("Could not update action " + dbAction.getID() + " of message "
+					+ dbAction.getMessage(), e);
+			} finally
+			{
+				theTransactor.releaseStatement(pStmt);
 			}
 			addModification(trans, MessageSubjectType.action, MessageChangeTypes.ActionChange.descrip, 0, action, null,
 				dbAction.getDescrip(), action.getMessage(), null);
@@ -3083,7 +3022,6 @@ public class DefaultMessageManager implements MessageManager
 	@Override
 	public void disconnect()
 	{
-		closePStatements();
 		theTransactor.release();
 	}
 }
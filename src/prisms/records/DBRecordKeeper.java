@@ -289,13 +289,18 @@ public class DBRecordKeeper implements RecordKeeper
 
 	static final Logger log = Logger.getLogger(DBRecordKeeper.class);
 
-	final String theNamespace;
+	/** The maximum number of statements sent to the database in a single JDBC batch */
+	public static final int BATCH_SIZE = 500;
 
-	Transactor<PrismsRecordException> theTransactor;
+	/**
+	 * The maximum number of IDs that {@link #getItems(long...)} queries one at a time with a cached
+	 * prepared statement instead of with a key-set expression
+	 */
+	public static final int PREPARED_KEY_LIMIT = 8;
 
-	private java.sql.PreparedStatement theChangeInserter;
+	final String theNamespace;
 
-	java.sql.PreparedStatement theCertSetter;
+	Transactor<PrismsRecordException> theTransactor;
 
 	final prisms.arch.ds.IDGenerator theIDs;
 
@@ -384,8 +389,6 @@ public class DBRecordKeeper implements RecordKeeper
 	protected void doStartup() throws PrismsRecordException
 	{
 		theTransactor.checkConnected();
-		if(theChangeInserter == null)
-			prepareStatements();
 		PrismsCenter selfCenter = getCenter(0, null);
 		if(selfCenter == null)
 		{
@@ -888,9 +891,17 @@ public class DBRecordKeeper implements RecordKeeper
 							}
 							if(blob != null)
 							{
-								theCertSetter.setBlob(1, blob);
-								theCertSetter.setInt(2, center.getID());
-								theCertSetter.executeUpdate();
+								java.sql.PreparedStatement certSetter = theTransactor
+									.getPreparedStatement(getCertSetSQL());
+								try
+								{
+									certSetter.setBlob(1, blob);
+									certSetter.setInt(2, center.getID());
+									certSetter.executeUpdate();
+								} finally
+								{
+									theTransactor.releaseStatement(certSetter);
+								}
 							}
 						} catch(SQLException e)
 						{
@@ -958,18 +969,20 @@ public class DBRecordKeeper implements RecordKeeper
 								bytes = getCertBytes(center.getCertificates());
 							else
 								bytes = null;
-							if(bytes != null)
+							java.sql.PreparedStatement certSetter = theTransactor
+								.getPreparedStatement(getCertSetSQL());
+							try
 							{
-								theCertSetter.setBinaryStream(1, new java.io.ByteArrayInputStream(
-									bytes), bytes.length);
-								theCertSetter.setInt(2, center.getID());
-								theCertSetter.executeUpdate();
-							}
-							else
+								if(bytes != null)
+									certSetter.setBinaryStream(1, new java.io.ByteArrayInputStream(
+										bytes), bytes.length);
+								else
+									certSetter.setNull(1, java.sql.Types.BLOB);
+								certSetter.setInt(2, center.getID());
+								certSetter.executeUpdate();
+							} finally
 							{
-								theCertSetter.setNull(1, java.sql.Types.BLOB);
-								theCertSetter.setInt(2, center.getID());
-								theCertSetter.executeUpdate();
+								theTransactor.releaseStatement(certSetter);
 							}
 						} catch(SQLException e)
 						{
@@ -2268,21 +2281,38 @@ public class DBRecordKeeper implements RecordKeeper
 				throw new PrismsRecordException("Could not create statement", e);
 			}
 		}
-		prisms.util.DBUtils.KeyExpression expr = prisms.util.DBUtils.simplifyKeySet(ids, 200);
-
 		try
 		{
 			ArrayList<ChangeTemplate> changeList = new ArrayList<ChangeTemplate>();
 			String sql = "SELECT * FROM " + theTransactor.getTablePrefix()
 				+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace) + " AND ";
+			java.sql.PreparedStatement pStmt = null;
 			ResultSet rs = null;
 			try
 			{
-				rs = DBUtils.executeQuery(stmt, sql, expr, "", "id", 90);
-				while(rs.next())
+				if(ids.length <= PREPARED_KEY_LIMIT)
 				{
-					ChangeTemplate template = getChangeTemplate(rs);
-					changeList.add(template);
+					// Few IDs--use a cached statement instead of making the database parse new SQL
+					sql += "id=?";
+					pStmt = theTransactor.getPreparedStatement(sql);
+					for(long id : ids)
+					{
+						pStmt.setLong(1, id);
+						rs = pStmt.executeQuery();
+						while(rs.next())
+							changeList.add(getChangeTemplate(rs));
+						rs.close();
+						rs = null;
+					}
+				}
+				else
+				{
+					rs = DBUtils.executeQuery(stmt, sql, ids, "", "id", 90);
+					while(rs.next())
+					{
+						ChangeTemplate template = getChangeTemplate(rs);
+						changeList.add(template);
+					}
 				}
 			} catch(SQLException e)
 			{
@@ -2297,6 +2327,8 @@ public class DBRecordKeeper implements RecordKeeper
 				{
 					log.error("Connection error", e);
 				}
+				if(pStmt != null)
+					theTransactor.releaseStatement(pStmt);
 			}
 
 			ChangeRecord [] ret = new ChangeRecord [changeList.size()];
@@ -2813,12 +2845,7 @@ public class DBRecordKeeper implements RecordKeeper
 						log.error("Connection error", e);
 					}
 			}
-			if(!hasAbsoluteIntegrity
-				&& record.type.additivity < 0
-				&& record.type.changeType == null
-				&& prisms.arch.ds.IDGenerator.getCenterID(record.id) == theIDs.getCenterID()
-				&& prisms.arch.ds.IDGenerator.getCenterID(getDataID(record.majorSubject)) == theIDs
-					.getCenterID())
+			if(mayPurgeDeletion(record))
 			{
 				/* If the item was created and deleted before anybody else saw it, it's safe to
 				 * purge the item and spare the DB the extra entries. */
@@ -2873,125 +2900,244 @@ public class DBRecordKeeper implements RecordKeeper
 					}
 				}
 			}
+			sql = getChangeInsertSQL();
+			java.sql.PreparedStatement pStmt = theTransactor.getPreparedStatement(sql);
+			try
+			{
+				setChangeParameters(pStmt, record);
+				pStmt.execute();
+			} finally
+			{
+				theTransactor.releaseStatement(pStmt);
+			}
 			sql = null;
-			synchronized(this)
+			if(theAutoPurger == null)
+				getAutoPurger();
+			theAutoPurger.doPurge(this, stmt, theTransactor.getTablePrefix()
+				+ "prisms_change_record", "changeTime", "changeUser", "subjectType", "changeType",
+				"additivity");
+		} catch(SQLException e)
+		{
+			throw new PrismsRecordException("Could not persist " + record.type.subjectType
+				+ " change: SQL=" + sql, e);
+		} finally
+		{
+			if(stmt != null)
+				try
+				{
+					stmt.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+		}
+	}
+
+	/**
+	 * @param record The change record being persisted
+	 * @return Whether the record is the deletion of an item created at this center, which may mean
+	 *         that the item's history can be purged instead of persisting the deletion
+	 */
+	private boolean mayPurgeDeletion(ChangeRecord record) throws PrismsRecordException
+	{
+		return !hasAbsoluteIntegrity
+			&& record.type.additivity < 0
+			&& record.type.changeType == null
+			&& prisms.arch.ds.IDGenerator.getCenterID(record.id) == theIDs.getCenterID()
+			&& prisms.arch.ds.IDGenerator.getCenterID(getDataID(record.majorSubject)) == theIDs
+				.getCenterID();
+	}
+
+	/**
+	 * Sets the parameters of a change insert statement for a change record
+	 * 
+	 * @param pStmt The statement prepared from {@link #getChangeInsertSQL()}
+	 * @param record The change record to insert
+	 */
+	private void setChangeParameters(java.sql.PreparedStatement pStmt, ChangeRecord record)
+		throws SQLException, PrismsRecordException
+	{
+		pStmt.setLong(1, record.id);
+		pStmt.setString(2, boolToSqlP(record.localOnly));
+		pStmt.setTimestamp(3, getUtcTimestamp(record.time));
+		pStmt.setLong(4, record.user.getID());
+		if(record instanceof ChangeRecordError)
+		{
+			ChangeRecordError error = (ChangeRecordError) record;
+			pStmt.setString(5, error.getSubjectType());
+			if(error.getChangeType() == null)
+				pStmt.setNull(6, java.sql.Types.VARCHAR);
+			else
+				pStmt.setString(6, error.getChangeType());
+			pStmt.setString(7, error.getAdditivity() < 0 ? "-" : (error.getAdditivity() > 0
+				? "+" : "0"));
+			pStmt.setInt(8, RecordUtils.getCenterID(error.getMajorSubjectID()));
+			pStmt.setLong(9, error.getMajorSubjectID());
+			if(error.getMinorSubjectID() >= 0)
+				pStmt.setLong(10, error.getMinorSubjectID());
+			else
+				pStmt.setNull(10, java.sql.Types.NUMERIC);
+			if(error.getSerializedPreValue() instanceof Number)
 			{
-				java.sql.PreparedStatement pStmt = theChangeInserter;
-				pStmt.clearParameters();
-				pStmt.setLong(1, record.id);
-				pStmt.setString(2, boolToSqlP(record.localOnly));
-				pStmt.setTimestamp(3, getUtcTimestamp(record.time));
-				pStmt.setLong(4, record.user.getID());
-				if(record instanceof ChangeRecordError)
-				{
-					ChangeRecordError error = (ChangeRecordError) record;
-					pStmt.setString(5, error.getSubjectType());
-					if(error.getChangeType() == null)
-						pStmt.setNull(6, java.sql.Types.VARCHAR);
-					else
-						pStmt.setString(6, error.getChangeType());
-					pStmt.setString(7, error.getAdditivity() < 0 ? "-" : (error.getAdditivity() > 0
-						? "+" : "0"));
-					pStmt.setInt(8, RecordUtils.getCenterID(error.getMajorSubjectID()));
-					pStmt.setLong(9, error.getMajorSubjectID());
-					if(error.getMinorSubjectID() >= 0)
-						pStmt.setLong(10, error.getMinorSubjectID());
-					else
-						pStmt.setNull(10, java.sql.Types.NUMERIC);
-					if(error.getSerializedPreValue() instanceof Number)
-					{
-						pStmt.setLong(11, ((Number) error.getSerializedPreValue()).longValue());
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					else if(error.getSerializedPreValue() != null)
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						String serialized = (String) error.getSerializedPreValue();
-						if(serialized.length() <= 100)
-						{
-							pStmt.setString(12, QommonsUtils.encodeUnicode(serialized));
-							pStmt.setNull(13, java.sql.Types.CLOB);
-						}
-						else
-						{
-							pStmt.setNull(12, java.sql.Types.VARCHAR);
-							pStmt.setCharacterStream(13,
-								new java.io.StringReader(QommonsUtils.encodeUnicode(serialized)),
-								serialized.length());
-						}
-					}
-					else
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					if(error.getData1ID() >= 0)
-						pStmt.setLong(14, error.getData1ID());
-					else
-						pStmt.setNull(14, java.sql.Types.NUMERIC);
-					if(error.getData2ID() >= 0)
-						pStmt.setLong(15, error.getData2ID());
-					else
-						pStmt.setNull(15, java.sql.Types.NUMERIC);
+				pStmt.setLong(11, ((Number) error.getSerializedPreValue()).longValue());
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			else if(error.getSerializedPreValue() != null)
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				String serialized = (String) error.getSerializedPreValue();
+				if(serialized.length() <= 100)
+				{
+					pStmt.setString(12, QommonsUtils.encodeUnicode(serialized));
+					pStmt.setNull(13, java.sql.Types.CLOB);
 				}
 				else
 				{
-					pStmt.setString(5, record.type.subjectType.name());
-					if(record.type.changeType == null)
-						pStmt.setNull(6, java.sql.Types.VARCHAR);
-					else
-						pStmt.setString(6, record.type.changeType.name());
-					pStmt.setString(7, record.type.additivity < 0 ? "-"
-						: (record.type.additivity > 0 ? "+" : "0"));
-					pStmt.setInt(8, getSubjectCenter(record.majorSubject));
-					pStmt.setLong(9, getDataID(record.majorSubject));
-					if(record.minorSubject == null)
-						pStmt.setNull(10, java.sql.Types.NUMERIC);
-					else
-						pStmt.setLong(10, getDataID(record.minorSubject));
-					if(record.previousValue == null)
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					else if(record.type.changeType.isObjectIdentifiable())
-					{
-						pStmt.setLong(11, getDataID(record.previousValue));
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					else
+					pStmt.setNull(12, java.sql.Types.VARCHAR);
+					pStmt.setCharacterStream(13,
+						new java.io.StringReader(QommonsUtils.encodeUnicode(serialized)),
+						serialized.length());
+				}
+			}
+			else
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			if(error.getData1ID() >= 0)
+				pStmt.setLong(14, error.getData1ID());
+			else
+				pStmt.setNull(14, java.sql.Types.NUMERIC);
+			if(error.getData2ID() >= 0)
+				pStmt.setLong(15, error.getData2ID());
+			else
+				pStmt.setNull(15, java.sql.Types.NUMERIC);
+		}
+		else
+		{
+			pStmt.setString(5, record.type.subjectType.name());
+			if(record.type.changeType == null)
+				pStmt.setNull(6, java.sql.Types.VARCHAR);
+			else
+				pStmt.setString(6, record.type.changeType.name());
+			pStmt.setString(7, record.type.additivity < 0 ? "-"
+				: (record.type.additivity > 0 ? "+" : "0"));
+			pStmt.setInt(8, getSubjectCenter(record.majorSubject));
+			pStmt.setLong(9, getDataID(record.majorSubject));
+			if(record.minorSubject == null)
+				pStmt.setNull(10, java.sql.Types.NUMERIC);
+			else
+				pStmt.setLong(10, getDataID(record.minorSubject));
+			if(record.previousValue == null)
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			else if(record.type.changeType.isObjectIdentifiable())
+			{
+				pStmt.setLong(11, getDataID(record.previousValue));
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			else
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				String serialized = serializePreValue(record);
+				if(serialized.length() <= 100)
+				{
+					pStmt.setString(12, QommonsUtils.encodeUnicode(serialized));
+					pStmt.setNull(13, java.sql.Types.CLOB);
+				}
+				else
+				{
+					pStmt.setNull(12, java.sql.Types.VARCHAR);
+					pStmt.setCharacterStream(13,
+						new java.io.StringReader(QommonsUtils.encodeUnicode(serialized)),
+						serialized.length());
+				}
+			}
+			if(record.data1 == null)
+				pStmt.setNull(14, java.sql.Types.NUMERIC);
+			else
+				pStmt.setLong(14, getDataID(record.data1));
+			if(record.data2 == null)
+				pStmt.setNull(15, java.sql.Types.NUMERIC);
+			else
+				pStmt.setLong(15, getDataID(record.data2));
+		}
+	}
+
+	/**
+	 * Persists a set of changes that already have assigned IDs. This is equivalent to calling
+	 * {@link #persist(ChangeRecord)} for each change, but the existence of all the changes is
+	 * checked at once and the new changes are inserted in JDBC batches of {@link #BATCH_SIZE}.
+	 * 
+	 * @param records The changes to persist
+	 * @throws PrismsRecordException If an error occurs setting the data
+	 */
+	public void persistAll(ChangeRecord... records) throws PrismsRecordException
+	{
+		if(records.length == 0)
+			return;
+		Statement stmt = null;
+		java.sql.PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		String sql = null;
+		ChangeRecord record = null;
+		try
+		{
+			stmt = theTransactor.getConnection().createStatement();
+			long [] ids = new long [records.length];
+			for(int i = 0; i < ids.length; i++)
+				ids[i] = records[i].id;
+			java.util.HashSet<Long> persisted = new java.util.HashSet<Long>();
+			sql = "SELECT id FROM " + theTransactor.getTablePrefix()
+				+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace) + " AND ";
+			rs = DBUtils.executeQuery(stmt, sql, ids, "", "id", 90);
+			while(rs.next())
+				persisted.add(Long.valueOf(rs.getLong(1)));
+			rs.close();
+			rs = null;
+			sql = null;
+
+			int batched = 0;
+			for(ChangeRecord rec : records)
+			{
+				record = rec;
+				if(!persisted.add(Long.valueOf(record.id)))
+					continue; // Already exists
+				if(mayPurgeDeletion(record))
+				{
+					// Rare--the item's history must be inserted before this is evaluated
+					if(batched > 0)
 					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						String serialized = serializePreValue(record);
-						if(serialized.length() <= 100)
-						{
-							pStmt.setString(12, QommonsUtils.encodeUnicode(serialized));
-							pStmt.setNull(13, java.sql.Types.CLOB);
-						}
-						else
-						{
-							pStmt.setNull(12, java.sql.Types.VARCHAR);
-							pStmt.setCharacterStream(13,
-								new java.io.StringReader(QommonsUtils.encodeUnicode(serialized)),
-								serialized.length());
-						}
+						pStmt.executeBatch();
+						batched = 0;
 					}
-					if(record.data1 == null)
-						pStmt.setNull(14, java.sql.Types.NUMERIC);
-					else
-						pStmt.setLong(14, getDataID(record.data1));
-					if(record.data2 == null)
-						pStmt.setNull(15, java.sql.Types.NUMERIC);
-					else
-						pStmt.setLong(15, getDataID(record.data2));
+					persist(record);
+					continue;
+				}
+				if(pStmt == null)
+				{
+					sql = getChangeInsertSQL();
+					pStmt = theTransactor.getConnection().prepareStatement(sql);
+					sql = null;
+				}
+				setChangeParameters(pStmt, record);
+				pStmt.addBatch();
+				batched++;
+				if(batched >= BATCH_SIZE)
+				{
+					pStmt.executeBatch();
+					batched = 0;
 				}
-				pStmt.execute();
-				pStmt.clearParameters();
 			}
+			record = null;
+			if(batched > 0)
+				pStmt.executeBatch();
 			if(theAutoPurger == null)
 				getAutoPurger();
 			theAutoPurger.doPurge(this, stmt, theTransactor.getTablePrefix()
@@ -2999,10 +3145,27 @@ public class DBRecordKeeper implements RecordKeeper
 				"additivity");
 		} catch(SQLException e)
 		{
-			throw new PrismsRecordException("Could not persist " + record.type.subjectType
-				+ " change: SQL=" + sql, e);
+			throw new PrismsRecordException("Could not persist " + records.length + " changes"
+				+ (record == null ? "" : " at " + record.type.subjectType + " change " + record.id)
+				+ ": SQL=" + sql, e);
 		} finally
 		{
+			if(rs != null)
+				try
+				{
+					rs.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+			if(pStmt != null)
+				try
+				{
+					pStmt.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
 			if(stmt != null)
 				try
 				{
@@ -3092,6 +3255,122 @@ public class DBRecordKeeper implements RecordKeeper
 		}
 	}
 
+	/**
+	 * Associates a set of changes with a synchronization record. This is equivalent to calling
+	 * {@link #associate(ChangeRecord, SyncRecord, boolean)} for each change, but the existing
+	 * associations are queried at once and the new and modified associations are written in JDBC
+	 * batches of {@link #BATCH_SIZE}.
+	 * 
+	 * @param syncRecord The synchronization record to associate the changes with
+	 * @param changes The already-existent changes to associate with the sync record
+	 * @param errors Whether there was an error sending or interpreting each change
+	 * @throws PrismsRecordException If an error occurs setting the data
+	 */
+	public void associateAll(SyncRecord syncRecord, ChangeRecord [] changes, boolean [] errors)
+		throws PrismsRecordException
+	{
+		if(changes.length != errors.length)
+			throw new IllegalArgumentException("Changes and errors must be the same length");
+		if(changes.length == 0)
+			return;
+		Statement stmt = null;
+		java.sql.PreparedStatement inserter = null;
+		java.sql.PreparedStatement updater = null;
+		ResultSet rs = null;
+		String sql = null;
+		try
+		{
+			stmt = theTransactor.getConnection().createStatement();
+			long [] ids = new long [changes.length];
+			for(int i = 0; i < ids.length; i++)
+				ids[i] = changes[i].id;
+			java.util.HashMap<Long, Boolean> existing = new java.util.HashMap<Long, Boolean>();
+			sql = "SELECT changeRecord, error FROM " + theTransactor.getTablePrefix()
+				+ "prisms_sync_assoc WHERE recordNS=" + toSQL(theNamespace) + " AND syncRecord="
+				+ syncRecord.getID() + " AND ";
+			rs = DBUtils.executeQuery(stmt, sql, ids, "", "changeRecord", 90);
+			while(rs.next())
+				existing.put(Long.valueOf(rs.getLong(1)),
+					Boolean.valueOf(boolFromSql(rs.getString(2))));
+			rs.close();
+			rs = null;
+
+			int inserts = 0, updates = 0;
+			for(int i = 0; i < changes.length; i++)
+			{
+				Boolean errorB = existing.put(Long.valueOf(changes[i].id),
+					Boolean.valueOf(errors[i]));
+				if(errorB != null && errorB.booleanValue() == errors[i])
+					continue;
+				if(errorB == null)
+				{
+					if(inserter == null)
+					{
+						sql = "INSERT INTO " + theTransactor.getTablePrefix()
+							+ "prisms_sync_assoc (recordNS, syncRecord, changeRecord, error)"
+							+ " VALUES (" + toSQL(theNamespace) + ", ?, ?, ?)";
+						inserter = theTransactor.getConnection().prepareStatement(sql);
+					}
+					inserter.setLong(1, syncRecord.getID());
+					inserter.setLong(2, changes[i].id);
+					inserter.setString(3, boolToSqlP(errors[i]));
+					inserter.addBatch();
+					if(++inserts >= BATCH_SIZE)
+					{
+						inserter.executeBatch();
+						inserts = 0;
+					}
+				}
+				else
+				{
+					if(updater == null)
+					{
+						sql = "UPDATE " + theTransactor.getTablePrefix()
+							+ "prisms_sync_assoc SET error=? WHERE recordNS="
+							+ toSQL(theNamespace) + " AND syncRecord=? AND changeRecord=?";
+						updater = theTransactor.getConnection().prepareStatement(sql);
+					}
+					updater.setString(1, boolToSqlP(errors[i]));
+					updater.setLong(2, syncRecord.getID());
+					updater.setLong(3, changes[i].id);
+					updater.addBatch();
+					if(++updates >= BATCH_SIZE)
+					{
+						updater.executeBatch();
+						updates = 0;
+					}
+				}
+			}
+			if(inserts > 0)
+				inserter.executeBatch();
+			if(updates > 0)
+				updater.executeBatch();
+		} catch(SQLException e)
+		{
+			throw new PrismsRecordException("Could not associate " + changes.length
+				+ " changes with sync record " + syncRecord + ": SQL=" + sql, e);
+		} finally
+		{
+			if(rs != null)
+				try
+				{
+					rs.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+			for(Statement toClose : new Statement [] {inserter, updater, stmt})
+				if(toClose != null)
+					try
+					{
+						toClose.close();
+					} catch(SQLException e)
+					{
+						log.error("Connection error", e);
+					}
+		}
+	}
+
 	/**
 	 * Purges a record from the database
 	 * 
@@ -3713,36 +3992,27 @@ public class DBRecordKeeper implements RecordKeeper
 		return o1 == null ? o2 == null : o1.equals(o2);
 	}
 
-	private void prepareStatements() throws PrismsRecordException
+	/** @return The SQL to prepare a statement to insert a change record */
+	private String getChangeInsertSQL()
 	{
-		String sql = "INSERT INTO " + theTransactor.getTablePrefix()
+		return "INSERT INTO " + theTransactor.getTablePrefix()
 			+ "prisms_change_record (recordNS, id, localOnly, changeTime,"
 			+ " changeUser, subjectType, changeType, additivity, subjectCenter, majorSubject,"
 			+ " minorSubject, preValueID, shortPreValue, longPreValue, changeData1,"
 			+ " changeData2) VALUES (" + toSQL(theNamespace)
 			+ ", ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-		try
-		{
-			theChangeInserter = theTransactor.getConnection().prepareStatement(sql);
-			sql = "UPDATE " + theTransactor.getTablePrefix()
-				+ "prisms_center_view SET serverCerts=?" + " WHERE id=?";
-			theCertSetter = theTransactor.getConnection().prepareStatement(sql);
-		} catch(SQLException e)
-		{
-			throw new PrismsRecordException("Could not prepare statement", e);
-		}
+	}
+
+	/** @return The SQL to prepare a statement to set a center's server certificates */
+	private String getCertSetSQL()
+	{
+		return "UPDATE " + theTransactor.getTablePrefix()
+			+ "prisms_center_view SET serverCerts=? WHERE id=?";
 	}
 
 	/** Called whenever this keeper's connection is connected or re-connected. For subclasses. */
 	protected void connectionUpdated()
 	{
-		try
-		{
-			prepareStatements();
-		} catch(PrismsRecordException e)
-		{
-			log.error("Could not get connection", e);
-		}
 	}
 
 	private String createQuery(Search search, Sorter<ChangeField> sorter, boolean withParameters)
@@ -4235,21 +4505,6 @@ public class DBRecordKeeper implements RecordKeeper
 
 	public void disconnect()
 	{
-		try
-		{
-			if(theChangeInserter != null)
-				theChangeInserter.close();
-			if(theCertSetter != null)
-				theCertSetter.close();
-		} catch(SQLException e)
-		{
-			log.error("Could not close prepared statement", e);
-		} catch(Error e)
-		{
-			// Keep getting these from an HSQL bug--silence
-			if(!e.getMessage().contains("compilation"))
-				log.error("Error", e);
-		}
 		theTransactor.release();
 	}
 }
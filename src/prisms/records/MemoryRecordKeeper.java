@@ -1321,6 +1321,19 @@ public class MemoryRecordKeeper implements RecordKeeper
 		}
 	}
 
+	public void persistAll(ChangeRecord... records) throws PrismsRecordException
+	{
+		for(ChangeRecord record : records)
+			persist(record);
+	}
+
+	public void associateAll(SyncRecord syncRecord, ChangeRecord [] changes, boolean [] errors)
+		throws PrismsRecordException
+	{
+		for(int i = 0; i < changes.length; i++)
+			associate(changes[i], syncRecord, errors[i]);
+	}
+
 	public void persist(ChangeRecord record) throws PrismsRecordException
 	{
 		for(ChangeRecord change : theChanges)
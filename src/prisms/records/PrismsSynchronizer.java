@@ -1793,7 +1793,12 @@ public class PrismsSynchronizer
 		}
 	}
 
-	/** Reads changes from a synchronization stream */
+	/**
+	 * Reads changes from a synchronization stream. Imported changes and their associations with the
+	 * sync record are stored in batches of {@link DBRecordKeeper#BATCH_SIZE}. {@link #parse()}
+	 * stores the last batch itself. Callers that use {@link #readChange(JSONObject)} directly must
+	 * call {@link #flush()} when they are finished.
+	 */
 	public static class ChangeReader extends org.qommons.json.SAJParser.DefaultHandler
 	{
 		private final SyncTransaction theTrans;
@@ -1806,6 +1811,14 @@ public class PrismsSynchronizer
 
 		private int theChangeCount;
 
+		private final java.util.ArrayList<ChangeRecord> theToPersist;
+
+		private final java.util.ArrayList<ChangeRecord> theToAssociate;
+
+		private final org.qommons.BooleanList theAssocErrors;
+
+		private final java.util.HashSet<Long> thePendingIDs;
+
 		/**
 		 * @param trans The sync transaction to use to read the synchronization data
 		 * @param reader The reader to read the data from
@@ -1821,11 +1834,21 @@ public class PrismsSynchronizer
 			theGetter = getter;
 			theTotalChangeCount = totalChangeCount;
 			theTrans.getPI().setProgressScale(totalChangeCount);
+			theToPersist = new java.util.ArrayList<ChangeRecord>();
+			theToAssociate = new java.util.ArrayList<ChangeRecord>();
+			theAssocErrors = new org.qommons.BooleanList();
+			thePendingIDs = new java.util.HashSet<Long>();
 		}
 
 		int parse() throws java.io.IOException, org.qommons.json.SAJParser.ParseException
 		{
-			new org.qommons.json.SAJParser().parse(theReader, this);
+			try
+			{
+				new org.qommons.json.SAJParser().parse(theReader, this);
+			} finally
+			{
+				flush();
+			}
 			return theChangeCount;
 		}
 
@@ -1865,6 +1888,8 @@ public class PrismsSynchronizer
 				return;
 			boolean store = true;
 			ChangeRecord change = theTrans.parseChange(json, theGetter);
+			if(thePendingIDs.contains(Long.valueOf(change.id)))
+				flush(); // The keeper must know about the earlier copy of the change
 			try
 			{
 				if(keeper.hasChange(change.id))
@@ -1905,16 +1930,70 @@ public class PrismsSynchronizer
 				log.error("Could not perform change " + change.id, e);
 				error = true;
 			}
-			try
+			if(store)
+				theToPersist.add(change);
+			if(theTrans.shouldStoreSyncRecord())
 			{
-				if(store)
-					keeper.persist(change);
-				if(theTrans.shouldStoreSyncRecord())
-					keeper.associate(change, theTrans.getSyncRecord(), error);
-			} catch(PrismsRecordException e2)
+				theToAssociate.add(change);
+				theAssocErrors.add(error);
+			}
+			thePendingIDs.add(Long.valueOf(change.id));
+			if(thePendingIDs.size() >= DBRecordKeeper.BATCH_SIZE)
+				flush();
+		}
+
+		/**
+		 * Stores the changes read since the last flush and associates them with the sync record. If
+		 * a batch fails, its changes are stored one at a time so that one bad change does not
+		 * prevent the rest from being stored.
+		 */
+		public void flush()
+		{
+			RecordKeeper keeper = theTrans.getSync().getKeeper();
+			if(!theToPersist.isEmpty())
 			{
-				log.error("Could not persist change " + change.id, e2);
+				ChangeRecord [] changes = theToPersist.toArray(new ChangeRecord [theToPersist.size()]);
+				try
+				{
+					keeper.persistAll(changes);
+				} catch(PrismsRecordException e)
+				{
+					log.warn("Could not persist " + changes.length + " changes--persisting singly", e);
+					for(ChangeRecord change : changes)
+						try
+						{
+							keeper.persist(change);
+						} catch(PrismsRecordException e2)
+						{
+							log.error("Could not persist change " + change.id, e2);
+						}
+				}
+			}
+			if(!theToAssociate.isEmpty())
+			{
+				ChangeRecord [] changes = theToAssociate.toArray(new ChangeRecord [theToAssociate.size()]);
+				boolean [] errors = theAssocErrors.toArray();
+				try
+				{
+					keeper.associateAll(theTrans.getSyncRecord(), changes, errors);
+				} catch(PrismsRecordException e)
+				{
+					log.warn("Could not associate " + changes.length
+						+ " changes--associating singly", e);
+					for(int i = 0; i < changes.length; i++)
+						try
+						{
+							keeper.associate(changes[i], theTrans.getSyncRecord(), errors[i]);
+						} catch(PrismsRecordException e2)
+						{
+							log.error("Could not associate change " + changes[i].id, e2);
+						}
+				}
 			}
+			theToPersist.clear();
+			theToAssociate.clear();
+			theAssocErrors.clear();
+			thePendingIDs.clear();
 		}
 	}
 
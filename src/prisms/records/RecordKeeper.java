@@ -209,6 +209,28 @@ public interface RecordKeeper extends
 	void associate(ChangeRecord change, SyncRecord syncRecord, boolean error)
 		throws PrismsRecordException;
 
+	/**
+	 * Persists a set of changes that already have assigned IDs. This is equivalent to calling
+	 * {@link #persist(ChangeRecord)} for each change, but may be much faster for large sets.
+	 * 
+	 * @param records The records of the changes
+	 * @throws PrismsRecordException If an error occurs setting the data
+	 */
+	void persistAll(ChangeRecord... records) throws PrismsRecordException;
+
+	/**
+	 * Associates a set of changes with a synchronization record. This is equivalent to calling
+	 * {@link #associate(ChangeRecord, SyncRecord, boolean)} for each change, but may be much faster
+	 * for large sets.
+	 * 
+	 * @param syncRecord The synchronization record to associate the changes with
+	 * @param changes The already-existent changes to associate with the sync record
+	 * @param errors Whether there was an error sending or interpreting each change
+	 * @throws PrismsRecordException If an error occurs setting the data
+	 */
+	void associateAll(SyncRecord syncRecord, ChangeRecord [] changes, boolean [] errors)
+		throws PrismsRecordException;
+
 	/**
 	 * @param centerID The ID to get the change by
 	 * @param subjectCenter The ID of the center whose data set was modified
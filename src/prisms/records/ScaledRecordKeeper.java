@@ -149,6 +149,17 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 		super.persist(record);
 	}
 
+	@Override
+	public void persistAll(ChangeRecord... records) throws PrismsRecordException
+	{
+		synchronized(this)
+		{
+			for(ChangeRecord record : records)
+				theProcessedChanges.add(record.id);
+		}
+		super.persistAll(records);
+	}
+
 	// /**
 	// * Purges synchronization locks in the database older than {@link #SYNC_PURGE_AGE_SECONDS}
 	// * seconds
@@ -78,7 +78,7 @@ public class ClientTree extends prisms.ui.tree.DataTreeMgrPlugin
 			conn = new prisms.util.PrismsServiceConnector(instance.location, getSession().getApp()
 				.getName(), getServiceName(), "System");
 			conn.setEnv(getSession().getApp().getEnvironment());
-			conn.setWorker(getWorker());
+			conn.setWorker(getAsyncWorker());
 			conn.setUserSource(getSession().getApp().getEnvironment().getUserSource());
 			try
 			{
@@ -455,6 +455,19 @@ public class ClientTree extends prisms.ui.tree.DataTreeMgrPlugin
 		return theWorker;
 	}
 
+	/**
+	 * @return The worker that this tree actually calls the server with. This is the environment's
+	 *         asynchronous worker if one is configured (e.g. for virtual threads), or
+	 *         {@link #getWorker()} otherwise.
+	 */
+	protected prisms.arch.Worker getAsyncWorker()
+	{
+		prisms.arch.Worker ret = getSession().getApp().getEnvironment().getAsyncWorker();
+		if(ret == null)
+			ret = getWorker();
+		return ret;
+	}
+
 	@Override
 	public synchronized void setSelection(DataTreeNode [] nodes, boolean fromUser)
 	{
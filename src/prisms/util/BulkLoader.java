@@ -0,0 +1,435 @@
+/*
+ * BulkLoader.java Created Oct 17, 2026
+ */
+package prisms.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+import org.qommons.QommonsUtils;
+
+/**
+ * Holds the settings for loading large amounts of data into a database and tracks the progress of
+ * loads. Rows are sent to the database in JDBC batches and may be committed periodically so that a
+ * load does not accumulate one enormous transaction. Used by {@link UnlLoader} and
+ * {@link DBUtils#copyDB(Connection[], Connection[], String, String[], boolean, BulkLoader)}.
+ */
+public class BulkLoader
+{
+	static final Logger log = Logger.getLogger(BulkLoader.class);
+
+	/** Receives progress reports from loads */
+	public static interface ProgressListener
+	{
+		/** @param progress The progress of the load */
+		void progress(Progress progress);
+	}
+
+	/** The progress of a load--the number of rows loaded and the rate they were loaded at */
+	public static class Progress
+	{
+		private final String theName;
+
+		private final Progress theParent;
+
+		private final long theStart;
+
+		private final java.util.concurrent.atomic.AtomicLong theRows;
+
+		private volatile long theLastReport;
+
+		private volatile long theEnd;
+
+		Progress(String name, Progress parent)
+		{
+			theName = name;
+			theParent = parent;
+			theStart = System.currentTimeMillis();
+			theLastReport = theStart;
+			theRows = new java.util.concurrent.atomic.AtomicLong();
+		}
+
+		/** @return The name of the table or data set being loaded */
+		public String getName()
+		{
+			return theName;
+		}
+
+		/** @return The load that this load is a part of, or null if this is a top-level load */
+		public Progress getParent()
+		{
+			return theParent;
+		}
+
+		/** @return The number of rows that have been loaded */
+		public long getRows()
+		{
+			return theRows.get();
+		}
+
+		/** @return The time that has elapsed since this load started or the duration of the load */
+		public long getElapsed()
+		{
+			long end = theEnd;
+			return (end > 0 ? end : System.currentTimeMillis()) - theStart;
+		}
+
+		/** @return The average number of rows loaded per second */
+		public double getRowsPerSecond()
+		{
+			long elapsed = getElapsed();
+			if(elapsed <= 0)
+				return 0;
+			return theRows.get() * 1000.0 / elapsed;
+		}
+
+		/** @return Whether this load has finished */
+		public boolean isDone()
+		{
+			return theEnd > 0;
+		}
+
+		void addRows(int rows)
+		{
+			theRows.addAndGet(rows);
+			if(theParent != null)
+				theParent.addRows(rows);
+		}
+
+		boolean shouldReport(long interval)
+		{
+			long now = System.currentTimeMillis();
+			if(now - theLastReport < interval)
+				return false;
+			theLastReport = now;
+			return true;
+		}
+
+		void finish()
+		{
+			theEnd = System.currentTimeMillis();
+		}
+
+		@Override
+		public String toString()
+		{
+			return theName + ": " + theRows.get() + " rows in "
+				+ QommonsUtils.printTimeLength(getElapsed()) + " ("
+				+ Math.round(getRowsPerSecond()) + " rows/s)" + (isDone() ? "" : "...");
+		}
+	}
+
+	/**
+	 * Inserts rows into a database with a prepared statement. The caller sets the statement's
+	 * parameters for each row and calls {@link #add()}. {@link #finish()} or {@link #abort()} must
+	 * be called when the load is over.
+	 */
+	public class Batch
+	{
+		private final Connection theConn;
+
+		private final PreparedStatement theStmt;
+
+		private final Progress theProgress;
+
+		private final int theSize;
+
+		private final boolean wasAutoCommit;
+
+		private int theBatchCount;
+
+		private long theUncommitted;
+
+		private boolean isEnded;
+
+		Batch(Connection conn, PreparedStatement stmt, Progress progress) throws SQLException
+		{
+			theConn = conn;
+			theStmt = stmt;
+			theProgress = progress;
+			int size = theBatchSize;
+			if(size > 1 && !conn.getMetaData().supportsBatchUpdates())
+				size = 1;
+			theSize = size;
+			wasAutoCommit = conn.getAutoCommit();
+			if(theCommitInterval > 0 && wasAutoCommit)
+				conn.setAutoCommit(false);
+		}
+
+		/** @return The progress of this batch's load */
+		public Progress getProgress()
+		{
+			return theProgress;
+		}
+
+		/** @return The number of rows added to the batch that have not been sent to the database */
+		public int getBatchCount()
+		{
+			return theBatchCount;
+		}
+
+		/**
+		 * Adds the statement's current parameters as a row to insert. The batch is sent to the
+		 * database if it is full.
+		 *
+		 * @throws SQLException If the row or the batch cannot be inserted
+		 */
+		public void add() throws SQLException
+		{
+			if(theSize <= 1)
+			{
+				theStmt.execute();
+				loaded(1);
+				return;
+			}
+			theStmt.addBatch();
+			theBatchCount++;
+			if(theBatchCount >= theSize)
+				flush();
+		}
+
+		/**
+		 * Sends the rows in the batch to the database
+		 *
+		 * @return The update counts of the rows in the batch
+		 * @throws SQLException If the batch cannot be inserted. If this is a
+		 *         {@link java.sql.BatchUpdateException}, its update counts tell which rows were
+		 *         inserted. None of the rows are counted as loaded.
+		 */
+		public int [] flush() throws SQLException
+		{
+			if(theBatchCount == 0)
+				return new int [0];
+			int count = theBatchCount;
+			theBatchCount = 0;
+			int [] ret;
+			try
+			{
+				ret = theStmt.executeBatch();
+			} catch(SQLException e)
+			{
+				theStmt.clearBatch();
+				throw e;
+			}
+			loaded(count);
+			return ret;
+		}
+
+		/**
+		 * Records rows that the caller inserted outside the batch, e.g. rows retried individually
+		 * after a batch failure
+		 *
+		 * @param rows The number of rows inserted
+		 * @throws SQLException If the rows need to be committed and the commit fails
+		 */
+		public void loaded(int rows) throws SQLException
+		{
+			theProgress.addRows(rows);
+			theUncommitted += rows;
+			if(theCommitInterval > 0 && theUncommitted >= theCommitInterval)
+			{
+				theConn.commit();
+				theUncommitted = 0;
+			}
+			if(theProgress.shouldReport(theReportInterval))
+				report(theProgress);
+		}
+
+		/**
+		 * Sends remaining rows to the database, commits them if this loader commits periodically,
+		 * and reports the end of the load
+		 *
+		 * @throws SQLException If the rows cannot be inserted or committed
+		 */
+		public void finish() throws SQLException
+		{
+			try
+			{
+				flush();
+				if(theCommitInterval > 0)
+					theConn.commit();
+			} catch(SQLException e)
+			{
+				abort();
+				throw e;
+			}
+			isEnded = true;
+			restore();
+			theProgress.finish();
+			report(theProgress);
+		}
+
+		/** Discards rows that have not been sent to the database or committed */
+		public void abort()
+		{
+			if(isEnded)
+				return;
+			isEnded = true;
+			theBatchCount = 0;
+			try
+			{
+				theStmt.clearBatch();
+			} catch(SQLException e)
+			{
+				log.error("Could not clear batch", e);
+			}
+			if(theCommitInterval > 0)
+			{
+				try
+				{
+					theConn.rollback();
+				} catch(SQLException e)
+				{
+					log.error("Could not roll back", e);
+				}
+			}
+			restore();
+			theProgress.finish();
+		}
+
+		private void restore()
+		{
+			if(theCommitInterval > 0 && wasAutoCommit)
+			{
+				try
+				{
+					theConn.setAutoCommit(true);
+				} catch(SQLException e)
+				{
+					log.error("Could not restore auto-commit", e);
+				}
+			}
+		}
+	}
+
+	private int theBatchSize;
+
+	private int theCommitInterval;
+
+	private long theReportInterval;
+
+	private ProgressListener theListener;
+
+	/** Creates a bulk loader with default settings */
+	public BulkLoader()
+	{
+		theBatchSize = 500;
+		theReportInterval = 10000;
+	}
+
+	/** @return The maximum number of rows sent to the database at once */
+	public int getBatchSize()
+	{
+		return theBatchSize;
+	}
+
+	/**
+	 * @param size The maximum number of rows to send to the database at once. A size of 1 inserts
+	 *        rows individually, for drivers whose batch support is broken.
+	 * @return This loader, for chaining
+	 */
+	public BulkLoader setBatchSize(int size)
+	{
+		if(size < 1)
+			throw new IllegalArgumentException("Batch size must be at least 1: " + size);
+		theBatchSize = size;
+		return this;
+	}
+
+	/**
+	 * @return The number of rows that are loaded between commits, or 0 if this loader does not
+	 *         commit
+	 */
+	public int getCommitInterval()
+	{
+		return theCommitInterval;
+	}
+
+	/**
+	 * @param rows The number of rows to load between commits. If this is 0 (the default), the
+	 *        loader leaves transactions to the connection's auto-commit setting or the caller.
+	 *        Otherwise, auto-commit is disabled for the duration of each load.
+	 * @return This loader, for chaining
+	 */
+	public BulkLoader setCommitInterval(int rows)
+	{
+		if(rows < 0)
+			throw new IllegalArgumentException("Commit interval may not be negative: " + rows);
+		theCommitInterval = rows;
+		return this;
+	}
+
+	/** @return The minimum time between progress reports for a load, in milliseconds */
+	public long getReportInterval()
+	{
+		return theReportInterval;
+	}
+
+	/**
+	 * @param interval The minimum time between progress reports for a load, in milliseconds
+	 * @return This loader, for chaining
+	 */
+	public BulkLoader setReportInterval(long interval)
+	{
+		theReportInterval = interval;
+		return this;
+	}
+
+	/**
+	 * @param listener The listener to receive progress reports. If null (the default), progress is
+	 *        logged.
+	 * @return This loader, for chaining
+	 */
+	public BulkLoader setListener(ProgressListener listener)
+	{
+		theListener = listener;
+		return this;
+	}
+
+	/**
+	 * @param name The name of the table or data set to load
+	 * @param parent The load that the new load is a part of, or null if it is a top-level load
+	 * @return A progress object to track the load
+	 */
+	public Progress startLoad(String name, Progress parent)
+	{
+		return new Progress(name, parent);
+	}
+
+	/**
+	 * Starts a batched insert
+	 *
+	 * @param conn The connection to insert data with
+	 * @param stmt The prepared insert statement
+	 * @param progress The progress of the load
+	 * @return The batch to insert rows with
+	 * @throws SQLException If the connection cannot be prepared for the load
+	 */
+	public Batch startBatch(Connection conn, PreparedStatement stmt, Progress progress)
+		throws SQLException
+	{
+		return new Batch(conn, stmt, progress);
+	}
+
+	/**
+	 * Finishes a load that was not performed by a single batch, e.g. the parent of a set of loads
+	 *
+	 * @param progress The progress of the finished load
+	 */
+	public void finish(Progress progress)
+	{
+		progress.finish();
+		report(progress);
+	}
+
+	void report(Progress progress)
+	{
+		ProgressListener listener = theListener;
+		if(listener != null)
+			listener.progress(progress);
+		else
+			log.info(progress);
+	}
+}
@@ -865,6 +865,20 @@ public class DBUtils
 	public static KeyExpression simplifyKeySet(long [] ids, int maxComplexity)
 	{
 		// First we need to sort the list and remove duplicates
+		ids = distinct(ids);
+		KeyExpression ret = simplifyKeySet(ids);
+		/* If ret is too complex, divide into multiple expressions of <=minComplexity that OR to
+		 * make the same overall expression */
+		return expand(ret, maxComplexity);
+	}
+
+	/**
+	 * @param ids The IDs to sort and remove duplicates from
+	 * @return The given IDs, sorted, without duplicates. This is the given array if it is already
+	 *         sorted and has no duplicates.
+	 */
+	private static long [] distinct(long [] ids)
+	{
 		if(!isSorted(ids))
 		{
 			long [] temp = new long [ids.length];
@@ -892,11 +906,7 @@ public class DBUtils
 					- lastIdx);
 			ids = newIDs;
 		}
-		duplicates = null;
-		KeyExpression ret = simplifyKeySet(ids);
-		/* If ret is too complex, divide into multiple expressions of <=minComplexity that OR to
-		 * make the same overall expression */
-		return expand(ret, maxComplexity);
+		return ids;
 	}
 
 	static KeyExpression simplifyKeySet(long [] ids)
@@ -2106,6 +2116,298 @@ public class DBUtils
 		return retRS;
 	}
 
+	/** The ways a large set of keys may be passed to the database in a query */
+	public static enum KeySetStrategy
+	{
+		/** Keys are compiled into SQL expressions by {@link DBUtils#simplifyKeySet(long[], int)} */
+		EXPRESSION,
+		/** Keys are bound to a single statement parameter as a JDBC array */
+		ARRAY,
+		/** Keys are inserted into a session temporary table that the query selects from */
+		TEMP_TABLE;
+	}
+
+	/** Key set tables that have been created, by connection */
+	private static final Map<Connection, Boolean> theKeySetTables = java.util.Collections
+		.synchronizedMap(new java.util.WeakHashMap<Connection, Boolean>());
+
+	/** Connection classes that cannot bind key sets, which will always use expressions */
+	private static final java.util.Set<Class<?>> theKeySetFailures = java.util.Collections
+		.synchronizedSet(new java.util.HashSet<Class<?>>());
+
+	private static final java.util.concurrent.atomic.AtomicInteger theKeySetIDs =
+		new java.util.concurrent.atomic.AtomicInteger();
+
+	/**
+	 * @param type The connection type
+	 * @return The strategy that
+	 *         {@link #executeQuery(Statement, String, long[], String, String, int)} uses for key
+	 *         sets too complex for a single expression on the given type of database
+	 */
+	public static KeySetStrategy getKeySetStrategy(ConnType type)
+	{
+		switch(type)
+		{
+		case POSTGRES:
+		case HSQL:
+		case ORACLE:
+			return KeySetStrategy.ARRAY;
+		case MSSQL:
+		case MYSQL:
+			return KeySetStrategy.TEMP_TABLE;
+		case INFORMIX:
+		case SYBASE:
+		case UNKNOWN:
+			return KeySetStrategy.EXPRESSION;
+		}
+		throw new IllegalArgumentException("Unrecognized connection type: " + type);
+	}
+
+	/**
+	 * Performs a database query for a set of keys. If the keys can be compiled into an expression
+	 * of no more than <code>maxComplexity</code>, a single query is made with that expression.
+	 * Otherwise, instead of breaking the keys up into multiple queries, the keys are bound as an
+	 * array parameter or inserted into a temporary table if the database supports it (see
+	 * {@link #getKeySetStrategy(ConnType)}), so that the database only parses one query.
+	 * 
+	 * @param stmt The statement to use to query the data
+	 * @param preSQL The SQL statement querying the data. It should end have a where clause at its
+	 *        end so that a clause can be added to the string.
+	 * @param ids The keys to get the data for
+	 * @param postSQL Potentially more SQL to append after the key clause
+	 * @param column The column that the key is for
+	 * @param maxComplexity The maximum complexity to query for at a time
+	 * @return A result set that iterates through all applicable rows in the database
+	 * @throws SQLException If an error occurs getting the results
+	 */
+	public static ResultSet executeQuery(Statement stmt, String preSQL, long [] ids,
+		String postSQL, String column, int maxComplexity) throws SQLException
+	{
+		ids = distinct(ids);
+		KeyExpression expr = simplifyKeySet(ids, maxComplexity);
+		if(expr.getComplexity() <= maxComplexity)
+			return executeQuery(stmt, preSQL, expr, postSQL, column, maxComplexity);
+		Connection conn = stmt.getConnection();
+		if(theKeySetFailures.contains(conn.getClass()))
+			return executeQuery(stmt, preSQL, expr, postSQL, column, maxComplexity);
+		ConnType type = getType(conn);
+		try
+		{
+			switch(getKeySetStrategy(type))
+			{
+			case ARRAY:
+				return executeArrayQuery(conn, type, preSQL, ids, postSQL, column);
+			case TEMP_TABLE:
+				return executeTempTableQuery(conn, type, preSQL, ids, postSQL, column);
+			case EXPRESSION:
+				break;
+			}
+		} catch(java.sql.SQLFeatureNotSupportedException e)
+		{
+			log.warn("Key sets cannot be bound for " + type + " connection "
+				+ conn.getClass().getName() + "--using expressions instead", e);
+			theKeySetFailures.add(conn.getClass());
+		} catch(SQLException e)
+		{
+			log.warn("Could not bind key set for " + type + " connection "
+				+ conn.getClass().getName() + "--using expressions for this query", e);
+		}
+		return executeQuery(stmt, preSQL, expr, postSQL, column, maxComplexity);
+	}
+
+	private static ResultSet executeArrayQuery(Connection conn, ConnType type, String preSQL,
+		long [] ids, String postSQL, String column) throws SQLException
+	{
+		Long [] keys = new Long [ids.length];
+		for(int i = 0; i < ids.length; i++)
+			keys[i] = Long.valueOf(ids[i]);
+		String sql;
+		Array array;
+		switch(type)
+		{
+		case POSTGRES:
+			sql = column + " = ANY(?)";
+			array = conn.createArrayOf("bigint", keys);
+			break;
+		case HSQL:
+			sql = column + " IN (UNNEST(?))";
+			array = conn.createArrayOf("BIGINT", keys);
+			break;
+		case ORACLE:
+			sql = column + " IN (SELECT COLUMN_VALUE FROM TABLE(?))";
+			// Oracle does not support createArrayOf
+			try
+			{
+				Class<?> oraConnType = Class.forName("oracle.jdbc.OracleConnection");
+				Object oraConn = conn.unwrap(oraConnType);
+				array = (Array) oraConnType.getMethod("createOracleArray", String.class,
+					Object.class).invoke(oraConn, "SYS.ODCINUMBERLIST", keys);
+			} catch(java.lang.reflect.InvocationTargetException e)
+			{
+				if(e.getCause() instanceof SQLException)
+					throw (SQLException) e.getCause();
+				throw new SQLException("Could not create Oracle array", e.getCause());
+			} catch(Exception e)
+			{
+				throw new java.sql.SQLFeatureNotSupportedException(
+					"Oracle arrays are not available", e);
+			}
+			break;
+		default:
+			throw new java.sql.SQLFeatureNotSupportedException("Array binding is not supported for "
+				+ type);
+		}
+		final PreparedStatement pStmt = conn.prepareStatement(preSQL + sql + postSQL);
+		try
+		{
+			pStmt.setArray(1, array);
+			return closeWith(pStmt.executeQuery(), new KeySetCleanup()
+			{
+				public void cleanUp() throws SQLException
+				{
+					pStmt.close();
+				}
+			});
+		} catch(SQLException e)
+		{
+			pStmt.close();
+			throw e;
+		}
+	}
+
+	private static ResultSet executeTempTableQuery(final Connection conn, ConnType type,
+		String preSQL, long [] ids, String postSQL, String column) throws SQLException
+	{
+		final String table;
+		String create;
+		switch(type)
+		{
+		case MSSQL:
+			table = "#prisms_key_set";
+			create = "CREATE TABLE " + table + " (keySet INT NOT NULL, keyValue BIGINT NOT NULL)";
+			break;
+		case MYSQL:
+			table = "prisms_key_set";
+			create = "CREATE TEMPORARY TABLE " + table
+				+ " (keySet INT NOT NULL, keyValue BIGINT NOT NULL, PRIMARY KEY(keySet, keyValue))";
+			break;
+		default:
+			throw new java.sql.SQLFeatureNotSupportedException(
+				"Temporary key tables are not supported for " + type);
+		}
+		if(!theKeySetTables.containsKey(conn))
+		{
+			Statement stmt = conn.createStatement();
+			try
+			{
+				stmt.execute(create);
+			} catch(SQLException e)
+			{
+				log.debug("Could not create " + table + "--may already exist", e);
+			} finally
+			{
+				stmt.close();
+			}
+			theKeySetTables.put(conn, Boolean.TRUE);
+		}
+		// Each query uses its own key set so queries on a shared connection do not interfere
+		final int keySet = theKeySetIDs.incrementAndGet();
+		final Statement stmt = conn.createStatement();
+		KeySetCleanup cleanup = new KeySetCleanup()
+		{
+			public void cleanUp() throws SQLException
+			{
+				try
+				{
+					stmt.executeUpdate("DELETE FROM " + table + " WHERE keySet=" + keySet);
+				} finally
+				{
+					stmt.close();
+				}
+			}
+		};
+		PreparedStatement insert = null;
+		try
+		{
+			insert = conn.prepareStatement("INSERT INTO " + table + " (keySet, keyValue) VALUES ("
+				+ keySet + ", ?)");
+			for(int i = 0; i < ids.length; i++)
+			{
+				insert.setLong(1, ids[i]);
+				insert.addBatch();
+				if(i % 1000 == 999)
+					insert.executeBatch();
+			}
+			insert.executeBatch();
+		} catch(SQLException e)
+		{
+			// Remove any of the key set's rows that were inserted
+			try
+			{
+				cleanup.cleanUp();
+			} catch(SQLException e2)
+			{
+				log.error("Could not clear key set " + keySet + " from " + table, e2);
+			}
+			throw e;
+		} finally
+		{
+			if(insert != null)
+				insert.close();
+		}
+		try
+		{
+			return closeWith(stmt.executeQuery(preSQL + column + " IN (SELECT keyValue FROM "
+				+ table + " WHERE keySet=" + keySet + ")" + postSQL), cleanup);
+		} catch(SQLException e)
+		{
+			cleanup.cleanUp();
+			throw e;
+		}
+	}
+
+	/** Releases the resources used to bind a key set when its result set is closed */
+	private interface KeySetCleanup
+	{
+		void cleanUp() throws SQLException;
+	}
+
+	private static ResultSet closeWith(final ResultSet rs, final KeySetCleanup cleanup)
+	{
+		return (ResultSet) java.lang.reflect.Proxy.newProxyInstance(
+			ResultSet.class.getClassLoader(), new Class<?> [] {ResultSet.class},
+			new java.lang.reflect.InvocationHandler()
+			{
+				private boolean isClosed;
+
+				public Object invoke(Object proxy, java.lang.reflect.Method method, Object [] args)
+					throws Throwable
+				{
+					if(method.getName().equals("close") && method.getParameterTypes().length == 0)
+					{
+						if(isClosed)
+							return null;
+						isClosed = true;
+						try
+						{
+							rs.close();
+						} finally
+						{
+							cleanup.cleanUp();
+						}
+						return null;
+					}
+					try
+					{
+						return method.invoke(rs, args);
+					} catch(java.lang.reflect.InvocationTargetException e)
+					{
+						throw e.getCause();
+					}
+				}
+			});
+	}
+
 	/**
 	 * Copies data from one database to another
 	 * 
@@ -2120,155 +2422,256 @@ public class DBUtils
 	 */
 	public static void copyDB(java.sql.Connection srcConn, java.sql.Connection destConn,
 		String schema, String [] tables, boolean clearFirst) throws java.sql.SQLException
+	{
+		copyDB(new java.sql.Connection [] {srcConn}, new java.sql.Connection [] {destConn}, schema,
+			tables, clearFirst, new BulkLoader());
+	}
+
+	/**
+	 * Copies data from one database to another, copying tables in parallel on several pairs of
+	 * connections. Each pair of connections copies one table at a time, taking the next table from
+	 * the list when it finishes one. If tables reference each other, either a single pair of
+	 * connections must be used (in which case tables are copied in order) or the destination's
+	 * constraints must be disabled for the copy.
+	 * 
+	 * @param srcConns The connections to copy data from
+	 * @param destConns The connections to copy data to. Tables copied from the source connection at
+	 *        an index are inserted with the destination connection at the same index.
+	 * @param schema The database schema to copy
+	 * @param tables The list of tables to copy data between the connections. These tables must
+	 *        exist and have identical schema in both databases
+	 * @param clearFirst Whether to clear all data from the destination tables before inserting the
+	 *        source's data
+	 * @param loader The loader determining the batch size and commit interval of the copy and
+	 *        receiving its progress
+	 * @throws java.sql.SQLException If an error occurs copying the data
+	 */
+	public static void copyDB(final java.sql.Connection [] srcConns,
+		final java.sql.Connection [] destConns, String schema, String [] tables,
+		final boolean clearFirst, final BulkLoader loader) throws java.sql.SQLException
+	{
+		int threads = Math.min(srcConns.length, destConns.length);
+		if(threads == 0)
+			throw new IllegalArgumentException("No connections to copy data with");
+		final String upSchema = schema.toUpperCase();
+		final java.util.concurrent.ConcurrentLinkedQueue<String> queue;
+		queue = new java.util.concurrent.ConcurrentLinkedQueue<String>(
+			java.util.Arrays.asList(tables));
+		final BulkLoader.Progress total = loader.startLoad("Copy of " + schema, null);
+		final java.util.concurrent.atomic.AtomicReference<Throwable> error;
+		error = new java.util.concurrent.atomic.AtomicReference<Throwable>();
+		Thread [] workers = new Thread [threads - 1];
+		for(int t = 1; t < threads; t++)
+		{
+			final int index = t;
+			workers[t - 1] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					copyTables(srcConns[index], destConns[index], upSchema, queue, clearFirst,
+						loader, total, error);
+				}
+			}, "DB Copy " + t);
+			workers[t - 1].start();
+		}
+		copyTables(srcConns[0], destConns[0], upSchema, queue, clearFirst, loader, total, error);
+		for(Thread worker : workers)
+		{
+			try
+			{
+				worker.join();
+			} catch(InterruptedException e)
+			{
+				error.compareAndSet(null, e);
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		loader.finish(total);
+		Throwable e = error.get();
+		if(e == null)
+			return;
+		if(e instanceof java.sql.SQLException)
+			throw (java.sql.SQLException) e;
+		else if(e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		else if(e instanceof Error)
+			throw (Error) e;
+		else
+			throw new java.sql.SQLException("Database copy interrupted", e);
+	}
+
+	/** Copies tables from the queue until it is empty or any copy fails */
+	static void copyTables(java.sql.Connection srcConn, java.sql.Connection destConn,
+		String schema, java.util.Queue<String> tables, boolean clearFirst, BulkLoader loader,
+		BulkLoader.Progress total, java.util.concurrent.atomic.AtomicReference<Throwable> error)
+	{
+		try
+		{
+			java.sql.Statement srcStmt = srcConn.createStatement();
+			java.sql.Statement destStmt = null;
+			try
+			{
+				if(clearFirst)
+					destStmt = destConn.createStatement();
+				String table;
+				while(error.get() == null && (table = tables.poll()) != null)
+					copyTable(srcConn, destConn, srcStmt, destStmt, schema, table.toUpperCase(),
+						loader, total);
+			} finally
+			{
+				srcStmt.close();
+				if(destStmt != null)
+					destStmt.close();
+			}
+		} catch(Throwable e)
+		{
+			error.compareAndSet(null, e);
+		}
+	}
+
+	private static void copyTable(java.sql.Connection srcConn, java.sql.Connection destConn,
+		java.sql.Statement srcStmt, java.sql.Statement destStmt, String schema, String table,
+		BulkLoader loader, BulkLoader.Progress total) throws java.sql.SQLException
 	{
 		java.sql.ResultSet rs;
 		java.util.ArrayList<String> columns = new java.util.ArrayList<String>();
 		IntList types = new IntList();
-		java.sql.Statement srcStmt = srcConn.createStatement();
-		java.sql.Statement destStmt = null;
-		if(clearFirst)
-			destStmt = destConn.createStatement();
-		schema = schema.toUpperCase();
-		for(String table : tables)
-		{
-			table = table.toUpperCase();
-			rs = srcConn.getMetaData().getColumns(null, schema, table, null);
-			while(rs.next())
-			{
-				columns.add(rs.getString("COLUMN_NAME"));
-				String typeName = rs.getString("TYPE_NAME").toLowerCase();
-				if(typeName.startsWith("varchar"))
-					types.add(Types.VARCHAR);
-				else if(typeName.startsWith("numeric") || typeName.startsWith("number"))
-					types.add(Types.NUMERIC);
-				else if(typeName.startsWith("int"))
-					types.add(Types.INTEGER);
-				else if(typeName.equals("longvarchar"))
-					types.add(Types.LONGVARCHAR);
-				else if(typeName.equals("longvarbinary"))
-					types.add(Types.LONGVARBINARY);
-				else if(typeName.startsWith("char"))
-					types.add(Types.CHAR);
-				else if(typeName.equals("clob"))
-					types.add(Types.CLOB);
-				else if(typeName.equals("blob"))
-					types.add(Types.BLOB);
-				else if(typeName.startsWith("timestamp") || typeName.startsWith("datetime"))
-					types.add(Types.TIMESTAMP);
-				else if(typeName.equals("smallint"))
-					types.add(Types.SMALLINT);
-				else if(typeName.startsWith("date"))
-					types.add(Types.DATE);
-				else if(typeName.equals("float"))
-					types.add(Types.FLOAT);
-				else if(typeName.equals("double"))
-					types.add(Types.DOUBLE);
-				else if(typeName.equals("boolean"))
-					types.add(Types.BOOLEAN);
-				else
-					throw new IllegalStateException("Unrecognized type " + typeName);
-			}
-			rs.close();
-			StringBuilder sql = new StringBuilder("INSERT INTO ");
-			sql.append(table);
-			sql.append('(');
-			for(int i = 0; i < columns.size(); i++)
-			{
-				sql.append(columns.get(i));
-				if(i < columns.size() - 1)
-					sql.append(", ");
-			}
-			sql.append(") VALUES (");
-			for(int i = 0; i < columns.size(); i++)
-			{
-				sql.append('?');
-				if(i < columns.size() - 1)
-					sql.append(", ");
-			}
-			sql.append(')');
-			java.sql.PreparedStatement pStmt = destConn.prepareStatement(sql.toString());
-			rs = srcStmt.executeQuery("SELECT * FROM " + table);
-			if(clearFirst)
-				destStmt.execute("DELETE FROM " + table);
-			/* If an entry refers to another in the same table, it may fail to insert because the
-			 * other entry is not present yet. For this reason, we try up to 5 times to insert the
-			 * entries, hoping that if it fails once for this reason, it will succeed the next time
-			 * because its parent entry has been inserted. This may still fail if there are too many
-			 * recursive references.*/
-			java.util.ArrayList<java.util.HashMap<String, Object>> entries;
-			entries = new java.util.ArrayList<java.util.HashMap<String, Object>>();
-			java.util.HashMap<String, Object> entry = new java.util.HashMap<String, Object>();
+		rs = srcConn.getMetaData().getColumns(null, schema, table, null);
+		while(rs.next())
+		{
+			columns.add(rs.getString("COLUMN_NAME"));
+			String typeName = rs.getString("TYPE_NAME").toLowerCase();
+			if(typeName.startsWith("varchar"))
+				types.add(Types.VARCHAR);
+			else if(typeName.startsWith("numeric") || typeName.startsWith("number"))
+				types.add(Types.NUMERIC);
+			else if(typeName.startsWith("int"))
+				types.add(Types.INTEGER);
+			else if(typeName.equals("longvarchar"))
+				types.add(Types.LONGVARCHAR);
+			else if(typeName.equals("longvarbinary"))
+				types.add(Types.LONGVARBINARY);
+			else if(typeName.startsWith("char"))
+				types.add(Types.CHAR);
+			else if(typeName.equals("clob"))
+				types.add(Types.CLOB);
+			else if(typeName.equals("blob"))
+				types.add(Types.BLOB);
+			else if(typeName.startsWith("timestamp") || typeName.startsWith("datetime"))
+				types.add(Types.TIMESTAMP);
+			else if(typeName.equals("smallint"))
+				types.add(Types.SMALLINT);
+			else if(typeName.startsWith("date"))
+				types.add(Types.DATE);
+			else if(typeName.equals("float"))
+				types.add(Types.FLOAT);
+			else if(typeName.equals("double"))
+				types.add(Types.DOUBLE);
+			else if(typeName.equals("boolean"))
+				types.add(Types.BOOLEAN);
+			else
+				throw new IllegalStateException("Unrecognized type " + typeName);
+		}
+		rs.close();
+		StringBuilder sql = new StringBuilder("INSERT INTO ");
+		sql.append(table);
+		sql.append('(');
+		for(int i = 0; i < columns.size(); i++)
+		{
+			sql.append(columns.get(i));
+			if(i < columns.size() - 1)
+				sql.append(", ");
+		}
+		sql.append(") VALUES (");
+		for(int i = 0; i < columns.size(); i++)
+		{
+			sql.append('?');
+			if(i < columns.size() - 1)
+				sql.append(", ");
+		}
+		sql.append(')');
+		java.sql.PreparedStatement pStmt = destConn.prepareStatement(sql.toString());
+		rs = srcStmt.executeQuery("SELECT * FROM " + table);
+		if(destStmt != null)
+			destStmt.execute("DELETE FROM " + table);
+		BulkLoader.Batch batch = loader.startBatch(destConn, pStmt, loader.startLoad(table, total));
+		/* If an entry refers to another in the same table, it may fail to insert because the
+		 * other entry is not present yet. For this reason, we try up to 5 times to insert the
+		 * entries, hoping that if it fails once for this reason, it will succeed the next time
+		 * because its parent entry has been inserted. This may still fail if there are too many
+		 * recursive references.*/
+		java.util.ArrayList<Object []> entries = new java.util.ArrayList<Object []>();
+		// The rows in the current batch, kept so that rows in a failed batch can be retried
+		java.util.ArrayList<Object []> batchRows = new java.util.ArrayList<Object []>();
+		try
+		{
 			while(rs.next())
 			{
-				pStmt.clearParameters();
+				Object [] entry = new Object [columns.size()];
 				for(int i = 0; i < columns.size(); i++)
 				{
-					Object value;
 					if(types.get(i) == Types.TIMESTAMP)
-						value = rs.getTimestamp(columns.get(i));
+						entry[i] = rs.getTimestamp(columns.get(i));
 					else
-						value = rs.getObject(columns.get(i));
-					entry.put(columns.get(i), value);
-					if(value == null)
-						pStmt.setNull(i + 1, types.get(i));
-					else
-						pStmt.setObject(i + 1, value);
+						entry[i] = rs.getObject(columns.get(i));
 				}
+				setParameters(pStmt, entry, types);
+				batchRows.add(entry);
 				try
 				{
-					pStmt.execute();
-					entry.clear();
+					batch.add();
 				} catch(java.sql.SQLException e)
 				{
-					entries.add(entry);
-					entry = new java.util.HashMap<String, Object>();
+					retryRows(pStmt, batchRows, e, types, entries, batch);
+					batchRows.clear();
 				}
+				if(batch.getBatchCount() == 0)
+					batchRows.clear();
 			}
 			rs.close();
+			try
+			{
+				batch.flush();
+			} catch(java.sql.SQLException e)
+			{
+				retryRows(pStmt, batchRows, e, types, entries, batch);
+			}
+			batchRows.clear();
 			for(int tries = 0; !entries.isEmpty() && tries < 3; tries++)
 			{
-				java.util.Iterator<java.util.HashMap<String, Object>> entryIter;
-				entryIter = entries.iterator();
+				java.util.Iterator<Object []> entryIter = entries.iterator();
 				while(entryIter.hasNext())
 				{
-					entry = entryIter.next();
-					pStmt.clearParameters();
-					for(int i = 0; i < columns.size(); i++)
-					{
-						Object value = entry.get(columns.get(i));
-						if(value == null)
-							pStmt.setNull(i + 1, types.get(i));
-						else
-							pStmt.setObject(i + 1, value);
-					}
+					setParameters(pStmt, entryIter.next(), types);
 					try
 					{
 						pStmt.execute();
 						entryIter.remove();
+						batch.loaded(1);
 					} catch(java.sql.SQLException e)
 					{}
 				}
 			}
-			if(!entries.isEmpty())
+			for(Object [] entry : entries)
 			{
-				java.util.Iterator<java.util.HashMap<String, Object>> entryIter;
-				entryIter = entries.iterator();
-				while(entryIter.hasNext())
-				{
-					entry = entryIter.next();
-					pStmt.clearParameters();
-					for(int i = 0; i < columns.size(); i++)
-					{
-						Object value = entry.get(columns.get(i));
-						if(value == null)
-							pStmt.setNull(i + 1, types.get(i));
-						else
-							pStmt.setObject(i + 1, value);
-					}
-					pStmt.execute();
-					entryIter.remove();
-				}
+				setParameters(pStmt, entry, types);
+				pStmt.execute();
+				batch.loaded(1);
 			}
+			entries.clear();
+			batch.finish();
+		} catch(java.sql.SQLException e)
+		{
+			batch.abort();
+			throw e;
+		} catch(RuntimeException e)
+		{
+			batch.abort();
+			throw e;
+		} finally
+		{
+			rs.close();
 			try
 			{
 				pStmt.close();
@@ -2276,12 +2679,52 @@ public class DBUtils
 			{
 				// HSQL gives us a bad error here. Keep going.
 			}
-			columns.clear();
-			types.clear();
 		}
-		srcStmt.close();
-		if(destStmt != null)
-			destStmt.close();
+	}
+
+	private static void setParameters(java.sql.PreparedStatement pStmt, Object [] entry,
+		IntList types) throws java.sql.SQLException
+	{
+		pStmt.clearParameters();
+		for(int i = 0; i < entry.length; i++)
+		{
+			if(entry[i] == null)
+				pStmt.setNull(i + 1, types.get(i));
+			else
+				pStmt.setObject(i + 1, entry[i]);
+		}
+	}
+
+	/**
+	 * Inserts rows individually after the batch they were in failed. Rows that the batch's update
+	 * counts show were inserted are skipped. Rows that fail again are added to the failed list.
+	 */
+	private static void retryRows(java.sql.PreparedStatement pStmt,
+		java.util.List<Object []> rows, java.sql.SQLException batchError, IntList types,
+		java.util.List<Object []> failed, BulkLoader.Batch batch) throws java.sql.SQLException
+	{
+		int [] counts = null;
+		if(batchError instanceof java.sql.BatchUpdateException)
+			counts = ((java.sql.BatchUpdateException) batchError).getUpdateCounts();
+		int inserted = 0;
+		for(int i = 0; i < rows.size(); i++)
+		{
+			if(counts != null && i < counts.length && counts[i] != Statement.EXECUTE_FAILED)
+			{
+				inserted++;
+				continue;
+			}
+			setParameters(pStmt, rows.get(i), types);
+			try
+			{
+				pStmt.execute();
+				inserted++;
+			} catch(java.sql.SQLException e)
+			{
+				failed.add(rows.get(i));
+			}
+		}
+		batch.loaded(inserted);
 	}
 
 	/**
@@ -4,6 +4,7 @@
 package prisms.util;
 
 import java.lang.reflect.AccessibleObject;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A reflection path keeps a set of "steps" going from one type to another type. Each step is a
@@ -11,6 +12,12 @@ import java.lang.reflect.AccessibleObject;
  * the starting type is given and the first step is invoked on that instance. The next step is
  * invoked on the return value of the first step, and so on. The return value of the last step as
  * invoked on the result of hte second-to-last step is the result.
+ * <p>
+ * The first time a path is followed, it is compiled into generated accessors for each step so that
+ * following the path does not use reflection. Steps that cannot be compiled (e.g. members of
+ * non-public classes) are invoked reflectively. Paths compiled from strings are cached by start
+ * type and path.
+ * </p>
  * 
  * @param <S> The type at the beginning of the path
  */
@@ -20,12 +27,185 @@ public class ReflectionPath<S>
 
 	final AccessibleObject [] theReflectPath;
 
+	/** Compiled accessors for each step, or null if this path has not been compiled yet */
+	private volatile Accessor [] theAccessors;
+
+	/**
+	 * Paths compiled from strings, by start type and path string. The paths are stored with each
+	 * start type so that caching them does not keep the type's class loader from being collected.
+	 */
+	private static final ClassValue<ConcurrentHashMap<String, ReflectionPath<?>>> theCache;
+
+	/**
+	 * LambdaMetafactory.metafactory, used to generate getters for steps. This is accessed
+	 * reflectively so that this class can run on Java 7, where steps are compiled into method
+	 * handles instead. Null if unavailable.
+	 */
+	private static final java.lang.reflect.Method theMetafactory;
+
+	static
+	{
+		theCache = new ClassValue<ConcurrentHashMap<String, ReflectionPath<?>>>()
+		{
+			@Override
+			protected ConcurrentHashMap<String, ReflectionPath<?>> computeValue(Class<?> type)
+			{
+				return new ConcurrentHashMap<String, ReflectionPath<?>>();
+			}
+		};
+		java.lang.reflect.Method metafactory;
+		try
+		{
+			metafactory = Class.forName("java.lang.invoke.LambdaMetafactory").getMethod(
+				"metafactory", java.lang.invoke.MethodHandles.Lookup.class, String.class,
+				java.lang.invoke.MethodType.class, java.lang.invoke.MethodType.class,
+				java.lang.invoke.MethodHandle.class, java.lang.invoke.MethodType.class);
+		} catch(ClassNotFoundException e)
+		{
+			metafactory = null;
+		} catch(NoSuchMethodException e)
+		{
+			metafactory = null;
+		}
+		theMetafactory = metafactory;
+	}
+
+	/** Gets the value of a single step in a path */
+	private static abstract class Accessor
+	{
+		abstract Object get(Object target) throws Throwable;
+	}
+
+	/** A getter implemented by generated code */
+	static interface Getter
+	{
+		/**
+		 * @param target The object to get the value from
+		 * @return The value
+		 */
+		Object get(Object target);
+	}
+
+	/** An accessor that calls a getter through a generated function */
+	private static class FunctionAccessor extends Accessor
+	{
+		private final Getter theGetter;
+
+		FunctionAccessor(Getter getter)
+		{
+			theGetter = getter;
+		}
+
+		@Override
+		Object get(Object target)
+		{
+			return theGetter.get(target);
+		}
+	}
+
+	/** An accessor that invokes a method handle */
+	private static class HandleAccessor extends Accessor
+	{
+		private final java.lang.invoke.MethodHandle theHandle;
+
+		HandleAccessor(java.lang.invoke.MethodHandle handle)
+		{
+			theHandle = handle.asType(java.lang.invoke.MethodType.methodType(Object.class,
+				Object.class));
+		}
+
+		@Override
+		Object get(Object target) throws Throwable
+		{
+			return theHandle.invokeExact(target);
+		}
+	}
+
+	/** An accessor that uses reflection, for steps that could not be compiled */
+	private static class ReflectiveAccessor extends Accessor
+	{
+		private final AccessibleObject theStep;
+
+		ReflectiveAccessor(AccessibleObject step)
+		{
+			theStep = step;
+		}
+
+		@Override
+		Object get(Object target) throws Throwable
+		{
+			try
+			{
+				if(theStep instanceof java.lang.reflect.Method)
+					return ((java.lang.reflect.Method) theStep).invoke(target);
+				else if(theStep instanceof java.lang.reflect.Field)
+					return ((java.lang.reflect.Field) theStep).get(target);
+				else
+					throw new IllegalStateException();
+			} catch(java.lang.reflect.InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+		}
+	}
+
 	private ReflectionPath(Class<S> startType, AccessibleObject [] reflectPath)
 	{
 		theStartType = startType;
 		theReflectPath = reflectPath;
 	}
 
+	private Accessor [] getAccessors()
+	{
+		Accessor [] ret = theAccessors;
+		if(ret == null)
+		{
+			ret = new Accessor [theReflectPath.length];
+			for(int p = 0; p < ret.length; p++)
+				ret[p] = compileStep(theReflectPath[p]);
+			theAccessors = ret;
+		}
+		return ret;
+	}
+
+	private static Accessor compileStep(AccessibleObject step)
+	{
+		java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.lookup();
+		try
+		{
+			if(step instanceof java.lang.reflect.Method)
+			{
+				java.lang.reflect.Method method = (java.lang.reflect.Method) step;
+				java.lang.invoke.MethodHandle handle = lookup.unreflect(method);
+				if(theMetafactory == null || method.getReturnType().isPrimitive())
+					return new HandleAccessor(handle);
+				java.lang.invoke.CallSite site;
+				try
+				{
+					site = (java.lang.invoke.CallSite) theMetafactory.invoke(null, lookup, "get",
+						java.lang.invoke.MethodType.methodType(Getter.class),
+						java.lang.invoke.MethodType.methodType(Object.class, Object.class), handle,
+						handle.type());
+				} catch(java.lang.reflect.InvocationTargetException e)
+				{
+					if(e.getCause() instanceof Error)
+						throw (Error) e.getCause();
+					return new HandleAccessor(handle);
+				}
+				return new FunctionAccessor((Getter) site.getTarget().invoke());
+			}
+			else if(step instanceof java.lang.reflect.Field)
+				return new HandleAccessor(lookup.unreflectGetter((java.lang.reflect.Field) step));
+		} catch(Error e)
+		{
+			throw e;
+		} catch(Throwable e)
+		{
+			// Not accessible to generated code--fall back to reflection
+		}
+		return new ReflectiveAccessor(step);
+	}
+
 	/** @return The starting type for this path */
 	public Class<S> getStartType()
 	{
@@ -62,27 +242,11 @@ public class ReflectionPath<S>
 	 */
 	public Object follow(S start) throws IllegalStateException
 	{
+		Accessor [] accessors = getAccessors();
 		Object ret = start;
-		for(int p = 0; p < theReflectPath.length; p++)
+		for(int p = 0; p < accessors.length; p++)
 		{
-			try
-			{
-				AccessibleObject ao = theReflectPath[p];
-				if(ao instanceof java.lang.reflect.Method)
-					ret = ((java.lang.reflect.Method) ao).invoke(ret);
-				else if(ao instanceof java.lang.reflect.Field)
-					ret = ((java.lang.reflect.Field) ao).get(ret);
-				else
-					throw new IllegalStateException();
-			} catch(java.lang.reflect.InvocationTargetException e)
-			{
-				throw new IllegalStateException("Reflection path failed at " + toString(p)
-					+ " for " + start, e.getCause());
-			} catch(IllegalAccessException e)
-			{
-				throw new IllegalStateException("Reflection path failed at " + toString(p)
-					+ " for " + start, e);
-			}
+			ret = step(accessors, p, ret, start);
 			if(ret == null)
 				throw new IllegalStateException(toString(p) + " for " + start + " was null!");
 		}
@@ -99,41 +263,40 @@ public class ReflectionPath<S>
 	 */
 	public Object [] path(S start) throws IllegalStateException
 	{
-		java.util.ArrayList<Object> ret = new java.util.ArrayList<Object>();
-		ret.add(start);
+		Accessor [] accessors = getAccessors();
+		Object [] ret = new Object [accessors.length + 1];
+		ret[0] = start;
 		Object step = start;
-		for(int p = 0; p < theReflectPath.length; p++)
+		for(int p = 0; p < accessors.length; p++)
 		{
-			try
-			{
-				AccessibleObject ao = theReflectPath[p];
-				if(ao instanceof java.lang.reflect.Method)
-					step = ((java.lang.reflect.Method) ao).invoke(step);
-				else if(ao instanceof java.lang.reflect.Field)
-					step = ((java.lang.reflect.Field) ao).get(step);
-				else
-					throw new IllegalStateException();
-			} catch(java.lang.reflect.InvocationTargetException e)
-			{
-				throw new IllegalStateException("Reflection path failed at " + toString(p)
-					+ " for " + start, e.getCause());
-			} catch(IllegalAccessException e)
-			{
-				throw new IllegalStateException("Reflection path failed at " + toString(p)
-					+ " for " + start, e);
-			}
+			step = step(accessors, p, step, start);
 			if(step == null)
 				throw new IllegalStateException(toString(p) + " for " + start + " was null!");
-			ret.add(step);
+			ret[p + 1] = step;
+		}
+		return ret;
+	}
+
+	private Object step(Accessor [] accessors, int p, Object target, S start)
+	{
+		try
+		{
+			return accessors[p].get(target);
+		} catch(Error e)
+		{
+			throw e;
+		} catch(Throwable e)
+		{
+			throw new IllegalStateException("Reflection path failed at " + toString(p) + " for "
+				+ start, e);
 		}
-		return ret.toArray();
 	}
 
 	private String toString(int p)
 	{
 		StringBuilder ret = new StringBuilder();
 		ret.append(theStartType.getName());
-		for(int p0 = 0; p0 < theReflectPath.length && p0 <= p; p++)
+		for(int p0 = 0; p0 < theReflectPath.length && p0 <= p; p0++)
 		{
 			ret.append('.');
 			AccessibleObject ao = theReflectPath[p0];
@@ -167,6 +330,10 @@ public class ReflectionPath<S>
 	public static <S> ReflectionPath<S> compile(Class<S> type, String reflectPath)
 		throws SecurityException, NoSuchMethodException, NoSuchFieldException
 	{
+		ConcurrentHashMap<String, ReflectionPath<?>> typeCache = theCache.get(type);
+		ReflectionPath<S> ret = (ReflectionPath<S>) typeCache.get(reflectPath);
+		if(ret != null)
+			return ret;
 		String [] pathSplit;
 		if(reflectPath.contains("."))
 			pathSplit = reflectPath.split("\\.");
@@ -174,7 +341,9 @@ public class ReflectionPath<S>
 			pathSplit = new String [] {reflectPath};
 		for(int p = 0; p < pathSplit.length; p++)
 			pathSplit[p] = pathSplit[p].trim();
-		return compile(type, pathSplit);
+		ret = compile(type, pathSplit);
+		typeCache.put(reflectPath, ret);
+		return ret;
 	}
 
 	/**
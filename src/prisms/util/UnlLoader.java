@@ -19,8 +19,6 @@ public class UnlLoader
 	private static final java.util.regex.Pattern DATE_PATTERN = java.util.regex.Pattern
 		.compile("\\d{1,2}/\\d{1,2}/\\d{2,4}");
 
-	private static final java.text.DateFormat DATE_FORMAT = new java.text.SimpleDateFormat("M/d/y");
-
 	/**
 	 * Inserts UNL data into a database
 	 * 
@@ -34,50 +32,132 @@ public class UnlLoader
 	public static void insertUNL(java.sql.Connection con, java.sql.PreparedStatement stmt,
 		java.io.Reader in, int columnCount) throws IOException, SQLException
 	{
-		int nextChar = in.read();
+		insertUNL(con, stmt, in, columnCount, new BulkLoader(), "UNL");
+	}
+
+	/**
+	 * Inserts UNL data into a database in batches
+	 * 
+	 * @param con The connection to use
+	 * @param stmt The statement to execute
+	 * @param in The reader providing UNL data
+	 * @param columnCount The number of columns in the UNL file
+	 * @param loader The loader determining the batch size and commit interval of the insertion
+	 * @param name The name of the data to report progress with
+	 * @return The number of rows inserted
+	 * @throws IOException If an error occurs reading the UNL data
+	 * @throws SQLException If the data cannot be inserted
+	 */
+	public static long insertUNL(java.sql.Connection con, java.sql.PreparedStatement stmt,
+		java.io.Reader in, int columnCount, BulkLoader loader, String name) throws IOException,
+		SQLException
+	{
+		// SimpleDateFormat is not thread-safe and loads may run in parallel
+		java.text.DateFormat dateFormat = new java.text.SimpleDateFormat("M/d/y");
+		UnlReader reader = new UnlReader(in);
+		BulkLoader.Batch batch = loader.startBatch(con, stmt, loader.startLoad(name, null));
+		StringBuilder nextArg = new StringBuilder();
+		int nextChar = reader.read();
 		int row, col;
-		for(row = 0; nextChar >= 0; row++)
+		try
 		{
-			for(col = 0; col < columnCount; col++)
+			for(row = 0; nextChar >= 0; row++)
 			{
-				StringBuilder nextArg = new StringBuilder();
-				while(nextChar >= 0 && nextChar != '|' && nextChar != '\n' && nextChar != '\r')
+				for(col = 0; col < columnCount; col++)
 				{
-					nextArg.append((char) nextChar);
-					nextChar = in.read();
-				}
-				try
-				{
-					if(DATE_PATTERN.matcher(nextArg).matches())
+					nextArg.setLength(0);
+					while(nextChar >= 0 && nextChar != '|' && nextChar != '\n' && nextChar != '\r')
 					{
-						try
-						{
-							stmt.setDate(col + 1,
-								new java.sql.Date(DATE_FORMAT.parse(nextArg.toString()).getTime()));
-						} catch(java.text.ParseException e)
+						nextArg.append((char) nextChar);
+						nextChar = reader.read();
+					}
+					try
+					{
+						if(DATE_PATTERN.matcher(nextArg).matches())
 						{
-							log.error("Could not parse date properly", e);
-							throw new SQLException("Could not parse date" + " properly: " + nextArg);
+							try
+							{
+								java.util.Date date = dateFormat.parse(nextArg.toString());
+								stmt.setDate(col + 1, new java.sql.Date(date.getTime()));
+							} catch(java.text.ParseException e)
+							{
+								log.error("Could not parse date properly", e);
+								throw new SQLException("Could not parse date properly: " + nextArg);
+							}
 						}
+						else if(nextArg.length() == 0)
+							// stmt.setNull(col + 1, java.sql.Types.NULL);
+							stmt.setNull(col + 1, java.sql.Types.FLOAT);
+						else
+							stmt.setString(col + 1, nextArg.toString());
+					} catch(SQLException e)
+					{
+						log.error("Row " + row + ", Column " + (col + 1) + "; arg=" + nextArg);
+						throw e;
 					}
-					else if(nextArg.length() == 0)
-						// stmt.setNull(col + 1, java.sql.Types.NULL);
-						stmt.setNull(col + 1, java.sql.Types.FLOAT);
-					else
-						stmt.setString(col + 1, nextArg.toString());
+					if(nextChar == '|')
+						nextChar = reader.read();
+				}
+				int firstRow = row - batch.getBatchCount();
+				try
+				{
+					batch.add();
 				} catch(SQLException e)
 				{
-					log.error("Row " + row + ", Column " + (col + 1) + "; arg=" + nextArg);
+					log.error("Could not insert rows " + firstRow + " to " + row);
 					throw e;
 				}
-				if(nextChar == '|')
-					nextChar = in.read();
+				while(nextChar >= 0 && nextChar != '\n' && nextChar != '\r')
+					nextChar = reader.read();
+				while(nextChar == '\n' || nextChar == '\r')
+					nextChar = reader.read();
+			}
+			batch.finish();
+		} catch(SQLException e)
+		{
+			batch.abort();
+			throw e;
+		} catch(IOException e)
+		{
+			batch.abort();
+			throw e;
+		}
+		return batch.getProgress().getRows();
+	}
+
+	/**
+	 * Reads characters from a block buffer, avoiding the synchronization and per-call overhead of
+	 * {@link java.io.Reader#read()}
+	 */
+	private static class UnlReader
+	{
+		private final java.io.Reader theReader;
+
+		private final char [] theBuffer;
+
+		private int thePosition;
+
+		private int theLength;
+
+		UnlReader(java.io.Reader reader)
+		{
+			theReader = reader;
+			theBuffer = new char [8192];
+		}
+
+		int read() throws IOException
+		{
+			if(thePosition == theLength)
+			{
+				theLength = theReader.read(theBuffer);
+				thePosition = 0;
+				if(theLength <= 0)
+				{
+					theLength = 0;
+					return -1;
+				}
 			}
-			stmt.execute();
-			while(nextChar >= 0 && nextChar != '\n' && nextChar != '\r')
-				nextChar = in.read();
-			while(nextChar == '\n' || nextChar == '\r')
-				nextChar = in.read();
+			return theBuffer[thePosition++];
 		}
 	}
 
@@ -93,6 +173,23 @@ public class UnlLoader
 	 */
 	public static boolean doLoad(java.sql.Connection con, String tableName, String [] colNames,
 		java.io.Reader unl)
+	{
+		return doLoad(con, tableName, colNames, unl, new BulkLoader());
+	}
+
+	/**
+	 * Performs a batched load for one UNL file
+	 * 
+	 * @param con The JDBC connection to use
+	 * @param tableName The table name to insert into
+	 * @param colNames The names of the columns to insert data into
+	 * @param unl The UNL data to read
+	 * @param loader The loader determining the batch size and commit interval of the load
+	 * @return True if and only if all the UNL data from the reader was inserted successfully into
+	 *         the table.
+	 */
+	public static boolean doLoad(java.sql.Connection con, String tableName, String [] colNames,
+		java.io.Reader unl, BulkLoader loader)
 	{
 		int i;
 		StringBuffer stmtBfr = new StringBuffer("INSERT INTO ");
@@ -138,7 +235,7 @@ public class UnlLoader
 			{
 				delStmt.close();
 			}
-			insertUNL(con, stmt, unl, colNames.length);
+			insertUNL(con, stmt, unl, colNames.length, loader, tableName);
 		} catch(IOException e)
 		{
 			log.error("Could not read UNL file", e);
@@ -169,19 +266,30 @@ public class UnlLoader
 	 *        <li>The user name to connect to the database with</li>
 	 *        <li>The password to connect to the database with</li>
 	 *        </ol>
+	 *        These may be followed by 2 optional arguments:
+	 *        <ol>
+	 *        <li>The number of rows to send to the database in each batch</li>
+	 *        <li>The number of rows to insert between commits</li>
+	 *        </ol>
 	 */
 	public static void main(String [] args)
 	{
 		prisms.arch.PrismsServer.initLog4j(prisms.arch.PrismsServer.class.getResource("log4j.xml"));
-		if(args.length != 5)
-			throw new IllegalArgumentException("UnlLoader expects 5 arguments:"
+		if(args.length < 5 || args.length > 7)
+			throw new IllegalArgumentException("UnlLoader expects 5 to 7 arguments:"
 				+ "The name of the UnlLoader file to read and the JDBC driver"
-				+ " name, URL, user name, and password");
+				+ " name, URL, user name, and password, optionally followed by"
+				+ " the batch size and commit interval");
 		String loadFile = args[0];
 		String driverName = args[1];
 		String url = args[2];
 		String userName = args[3];
 		String password = args[4];
+		BulkLoader loader = new BulkLoader();
+		if(args.length > 5)
+			loader.setBatchSize(Integer.parseInt(args[5]));
+		if(args.length > 6)
+			loader.setCommitInterval(Integer.parseInt(args[6]));
 		java.sql.Connection con;
 		try
 		{
@@ -252,7 +360,7 @@ public class UnlLoader
 				String [] colNames = unlProp.split(",");
 				for(int col = 0; col < colNames.length; col++)
 					colNames[col] = colNames[col].trim();
-				if(!doLoad(con, tableName, colNames, unlReader))
+				if(!doLoad(con, tableName, colNames, unlReader, loader))
 					log.error("Load unsuccessful for UNL file " + unlFile);
 			}
 		} finally